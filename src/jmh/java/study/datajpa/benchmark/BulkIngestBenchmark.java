@@ -0,0 +1,76 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.IngestResult;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.BulkIngestRepository;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * rows건 insert를 save() 반복(호출마다 트랜잭션)과 BulkIngestRepository(chunk마다 JDBC batch + flush/clear)로 비교.
+ * 한 번 실행에 rows건을 넣으므로 SingleShotTime으로 재고, 넣은 member는 iteration마다 지운다.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkIngestBenchmark {
+
+    static final String PREFIX = "ingest";
+
+    @State(Scope.Benchmark)
+    public static class Ingest {
+
+        @Param({"5000"})
+        int rows;
+
+        @Param({"100"})
+        int chunkSize;
+
+        MemberRepository memberRepository;
+        BulkIngestRepository bulkIngestRepository;
+        TransactionTemplate transactionTemplate;
+        EntityManager em;
+
+        @Setup(Level.Trial)
+        public void setUp(SeededContext ctx) {
+            memberRepository = ctx.memberRepository;
+            bulkIngestRepository = ctx.context.getBean(BulkIngestRepository.class);
+            transactionTemplate = new TransactionTemplate(ctx.context.getBean(PlatformTransactionManager.class));
+            em = ctx.context.getBean(EntityManager.class);
+        }
+
+        @TearDown(Level.Iteration)
+        public void deleteInserted() {
+            transactionTemplate.executeWithoutResult(status ->
+                    em.createQuery("delete from Member m where m.username like '" + PREFIX + "%'").executeUpdate());
+        }
+    }
+
+    @Benchmark
+    public int saveLoop(Ingest ingest) {
+        for (int i = 0; i < ingest.rows; i++) {
+            ingest.memberRepository.save(new Member(PREFIX + i, i));
+        }
+        return ingest.rows;
+    }
+
+    @Benchmark
+    public IngestResult bulkIngest(Ingest ingest) {
+        return ingest.bulkIngestRepository.saveMembers(IntStream.range(0, ingest.rows)
+                .mapToObj(i -> new Member(PREFIX + i, i)), ingest.chunkSize);
+    }
+}
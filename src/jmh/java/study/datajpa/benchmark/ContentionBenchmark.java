@@ -0,0 +1,67 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.dao.OptimisticLockingFailureException;
+import study.datajpa.entity.Member;
+import study.datajpa.monitoring.LockMetrics;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 여러 스레드가 member 한 건을 동시에 수정할 때 비관적 락(대기)과 낙관적 락(충돌 후 재시도) 비교.
+ * 락 대기 시간/충돌/재시도 횟수는 /internal/locks와 같은 LockMetrics 값을 trial 끝에 출력한다.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class ContentionBenchmark {
+
+    static final String HOT = "hot";
+
+    @State(Scope.Benchmark)
+    public static class HotMember {
+
+        MemberRepository memberRepository;
+        LockMetrics lockMetrics;
+
+        @Setup(Level.Trial)
+        public void setUp(SeededContext ctx) {
+            memberRepository = ctx.memberRepository;
+            lockMetrics = ctx.context.getBean(LockMetrics.class);
+            memberRepository.save(new Member(HOT, 0));
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            lockMetrics.read().forEach(stats -> System.out.printf(
+                    "%n%s lockWaits=%d lockWaitMillis=%d maxLockWaitMillis=%d conflicts=%d retries=%d backoffMillis=%d exhausted=%d%n",
+                    stats.getOperation(), stats.getLockWaits(), stats.getLockWaitMillis(), stats.getMaxLockWaitMillis(),
+                    stats.getConflicts(), stats.getRetries(), stats.getBackoffMillis(), stats.getExhausted()));
+        }
+    }
+
+    @Benchmark
+    public int pessimisticLock(HotMember hot) {
+        return hot.memberRepository.addAgeWithPessimisticLock(HOT, 1);
+    }
+
+    //재시도를 다 써서 실패한 호출도 처리량에 포함된다. (횟수는 exhausted)
+    @Benchmark
+    public int optimisticLockWithRetry(HotMember hot) {
+        try {
+            return hot.memberRepository.addAgeWithOptimisticLock(HOT, 1);
+        } catch (OptimisticLockingFailureException e) {
+            return 0;
+        }
+    }
+}
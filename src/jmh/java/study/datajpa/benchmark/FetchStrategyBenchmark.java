@@ -0,0 +1,56 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * member 전체와 team 이름을 읽는 방식별 비교.
+ * 지연로딩은 team 수만큼 추가 select(N+1)가 나가고, 나머지는 한 번의 join으로 끝난다.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime}) //SampleTime: p50/p99 지연시간
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FetchStrategyBenchmark {
+
+    @Benchmark
+    public void lazyLoading(SeededContext ctx, Blackhole bh) {
+        readTeams(ctx, bh, repository -> repository.findMemberCustom());
+    }
+
+    @Benchmark
+    public void fetchJoin(SeededContext ctx, Blackhole bh) {
+        readTeams(ctx, bh, repository -> repository.findMemberFetchJoin());
+    }
+
+    @Benchmark
+    public void entityGraphFindAll(SeededContext ctx, Blackhole bh) {
+        readTeams(ctx, bh, repository -> repository.findAll());
+    }
+
+    @Benchmark
+    public void entityGraphQuery(SeededContext ctx, Blackhole bh) {
+        readTeams(ctx, bh, repository -> repository.findMemberEntityGraph());
+    }
+
+    @Benchmark
+    public void namedEntityGraph(SeededContext ctx, Blackhole bh) {
+        readTeams(ctx, bh, repository -> repository.findEntityGraphByUsername(SeededContext.USERNAME));
+    }
+
+    //영속성 컨텍스트는 트랜잭션마다 새로 만들어지므로 매 호출이 같은 조건에서 시작한다.
+    private void readTeams(SeededContext ctx, Blackhole bh, Function<MemberRepository, List<Member>> query) {
+        ctx.readOnly.executeWithoutResult(status -> {
+            for (Member member : query.apply(ctx.memberRepository)) {
+                bh.consume(member.getTeam().getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,113 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.PageRequest;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.repository.MemberProjection;
+import study.datajpa.repository.MemberRow;
+import study.datajpa.repository.NestedClosedProjections;
+import study.datajpa.repository.UsernameOnly;
+import study.datajpa.repository.UsernameOnlyDto;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 엔티티 대신 projection/DTO로 읽을 때의 비교.
+ * 모든 필드를 실제로 꺼내야 open projection(SpEL)처럼 접근 시점에 비용이 드는 방식도 같이 잴 수 있다.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProjectionBenchmark {
+
+    @Benchmark
+    public void openProjection(SeededContext ctx, Blackhole bh) {
+        ctx.readOnly.executeWithoutResult(status -> {
+            List<UsernameOnly> result = ctx.memberRepository.findProjectionByUsername(SeededContext.USERNAME, UsernameOnly.class);
+            for (UsernameOnly usernameOnly : result) {
+                bh.consume(usernameOnly.getUsername());
+            }
+        });
+    }
+
+    //타입별로 캐시된 CompiledProjection 사용
+    @Benchmark
+    public void compiledOpenProjection(SeededContext ctx, Blackhole bh) {
+        ctx.readOnly.executeWithoutResult(status -> {
+            List<UsernameOnly> result = ctx.memberRepository.findCompiledProjectionByUsername(SeededContext.USERNAME, UsernameOnly.class);
+            for (UsernameOnly usernameOnly : result) {
+                bh.consume(usernameOnly.getUsername());
+            }
+        });
+    }
+
+    @Benchmark
+    public void classProjection(SeededContext ctx, Blackhole bh) {
+        ctx.readOnly.executeWithoutResult(status -> {
+            List<UsernameOnlyDto> result = ctx.memberRepository.findProjectionByUsername(SeededContext.USERNAME, UsernameOnlyDto.class);
+            for (UsernameOnlyDto dto : result) {
+                bh.consume(dto.getUsername());
+            }
+        });
+    }
+
+    @Benchmark
+    public void nestedClosedProjection(SeededContext ctx, Blackhole bh) {
+        ctx.readOnly.executeWithoutResult(status -> {
+            List<NestedClosedProjections> result = ctx.memberRepository.findProjectionByUsername(SeededContext.USERNAME, NestedClosedProjections.class);
+            for (NestedClosedProjections projection : result) {
+                bh.consume(projection.getUsername());
+                bh.consume(projection.getTeam().getName());
+            }
+        });
+    }
+
+    //username, team.name 컬럼만 join 한 번으로 조회
+    @Benchmark
+    public void tupleNestedClosedProjection(SeededContext ctx, Blackhole bh) {
+        ctx.readOnly.executeWithoutResult(status -> {
+            List<NestedClosedProjections> result = ctx.memberRepository.findCompiledProjectionByUsername(SeededContext.USERNAME, NestedClosedProjections.class);
+            for (NestedClosedProjections projection : result) {
+                bh.consume(projection.getUsername());
+                bh.consume(projection.getTeam().getName());
+            }
+        });
+    }
+
+    @Benchmark
+    public void dtoConstructorQuery(SeededContext ctx, Blackhole bh) {
+        ctx.readOnly.executeWithoutResult(status -> {
+            for (MemberDto dto : ctx.memberRepository.findMemberDto()) {
+                bh.consume(dto.getUsername());
+                bh.consume(dto.getTeamName());
+            }
+        });
+    }
+
+    //네이티브 쿼리: Spring Data 인터페이스 프록시(Map 기반) vs ResultSet 직접 매핑
+    @Benchmark
+    public void nativeProxyProjection(SeededContext ctx, Blackhole bh) {
+        ctx.readOnly.executeWithoutResult(status -> {
+            for (MemberProjection projection : ctx.memberRepository.findSliceByNatvieProjection(PageRequest.of(0, ctx.members))) {
+                bh.consume(projection.getId());
+                bh.consume(projection.getUsername());
+                bh.consume(projection.getTeamName());
+            }
+        });
+    }
+
+    @Benchmark
+    public void nativeRows(SeededContext ctx, Blackhole bh) {
+        ctx.readOnly.executeWithoutResult(status -> {
+            for (MemberRow row : ctx.memberRepository.findSliceByNativeRows(PageRequest.of(0, ctx.members))) {
+                bh.consume(row.id());
+                bh.consume(row.getUsername());
+                bh.consume(row.getTeamName());
+            }
+        });
+    }
+}
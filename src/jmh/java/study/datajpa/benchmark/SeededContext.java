@@ -0,0 +1,72 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.DataJpaApplication;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.BulkIngestRepository;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 인메모리 H2에 members/teams 건수만큼 데이터를 넣은 스프링 컨텍스트.
+ * 2차 캐시/query cache는 꺼서 매번 DB에서 읽는 비용을 잰다.
+ * 모든 member의 username을 같게 넣어 username 조건 메소드(Member.all 그래프, projection)도 전체를 읽도록 한다.
+ */
+@State(Scope.Benchmark)
+public class SeededContext {
+
+    static final String USERNAME = "member";
+
+    @Param({"1000"})
+    int members;
+
+    @Param({"10"})
+    int teams;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    TransactionTemplate readOnly;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DataJpaApplication.class)
+                .web(WebApplicationType.NONE)
+                .run( //application.yml보다 우선하도록 커맨드라인 인자로 넘긴다.
+                        "--spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                        "--spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--decorator.datasource.p6spy.enable-logging=false",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--logging.level.org.hibernate.engine.jdbc.batch.internal=off"); //ContentionBenchmark의 version 충돌마다 찍히는 batch 오류 로그
+        memberRepository = context.getBean(MemberRepository.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+
+        List<Team> teamList = IntStream.range(0, teams)
+                .mapToObj(i -> new Team("team" + i))
+                .collect(Collectors.toList());
+        context.getBean(BulkIngestRepository.class).saveMembers(IntStream.range(0, members)
+                .mapToObj(i -> new Member(USERNAME, i % 100, teamList.get(i % teams)))
+                .collect(Collectors.toList()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
@@ -0,0 +1,91 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.UsernameIndexStats;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.BulkIngestRepository;
+import study.datajpa.repository.UsernameIndex;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * /members/search의 UsernameIndex와 DB에서 lower(username) like '%q%'로 찾는 경우 비교.
+ * SeededContext의 member(username이 모두 같음)에 더해 무작위 username을 가진 member를 named 건수만큼 넣는다.
+ * 인덱스 메모리 사용량(/internal/username-index와 같은 값)은 trial 끝에 출력한다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UsernameSearchBenchmark {
+
+    static final int LIMIT = 10;
+
+    @State(Scope.Benchmark)
+    public static class NamedMembers {
+
+        @Param({"10000"})
+        int named;
+
+        @Param({"ka", "kam", "amol"}) //1~2글자는 prefix, 3글자 이상은 포함 검색
+        String q;
+
+        UsernameIndex usernameIndex;
+        EntityManager em;
+
+        @Setup(Level.Trial)
+        public void setUp(SeededContext ctx) {
+            Random random = new Random(42);
+            ctx.context.getBean(BulkIngestRepository.class).saveMembers(IntStream.range(0, named)
+                    .mapToObj(i -> new Member(randomName(random), i % 100, null))
+                    .collect(Collectors.toList()));
+            usernameIndex = ctx.context.getBean(UsernameIndex.class);
+            usernameIndex.rebuild();
+            em = ctx.context.getBean(EntityManager.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            UsernameIndexStats stats = usernameIndex.stats();
+            System.out.printf("%nindexed=%d trigrams=%d estimatedBytes=%d lastBuildMillis=%d%n",
+                    stats.getIndexedCount(), stats.getTrigramCount(), stats.getEstimatedBytes(), stats.getLastBuildMillis());
+        }
+
+        private static String randomName(Random random) {
+            char[] name = new char[6 + random.nextInt(6)];
+            for (int k = 0; k < name.length; k++) {
+                name[k] = (char) ('a' + random.nextInt(26));
+            }
+            return new String(name);
+        }
+    }
+
+    @Benchmark
+    public List<MemberDto> index(NamedMembers members) {
+        return members.usernameIndex.search(members.q, LIMIT);
+    }
+
+    @Benchmark
+    public List<Object[]> like(SeededContext ctx, NamedMembers members) {
+        String pattern = members.q.length() < 3 ? members.q + "%" : "%" + members.q + "%";
+        return ctx.readOnly.execute(status -> members.em.createQuery(
+                        "select m.id, m.username from Member m where lower(m.username) like :pattern order by lower(m.username), m.id",
+                        Object[].class)
+                .setParameter("pattern", pattern)
+                .setMaxResults(LIMIT)
+                .getResultList());
+    }
+}
@@ -3,14 +3,16 @@ package study.datajpa;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.auditing.DateTimeProvider;
 import org.springframework.data.domain.AuditorAware;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import study.datajpa.entity.AuditingScope;
 
 import java.util.Optional;
 import java.util.UUID;
 
 @SpringBootApplication
-@EnableJpaAuditing
+@EnableJpaAuditing(dateTimeProviderRef = "auditingDateTimeProvider")
 public class DataJpaApplication {
 
 	public static void main(String[] args) {
@@ -26,4 +28,10 @@ public class DataJpaApplication {
 			}
 		};
 	}
+
+	//AuditingEntityListener를 쓰는 엔티티(Item)도 flush 단위 시각을 쓰도록
+	@Bean
+	public DateTimeProvider auditingDateTimeProvider() {
+		return () -> Optional.of(AuditingScope.now());
+	}
 }
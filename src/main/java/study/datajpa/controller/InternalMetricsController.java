@@ -0,0 +1,89 @@
+package study.datajpa.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.datajpa.datasource.ReplicaRouting;
+import study.datajpa.dto.CacheRegionStats;
+import study.datajpa.dto.DataSourceRouteStats;
+import study.datajpa.dto.LockContentionStats;
+import study.datajpa.dto.NearCacheStats;
+import study.datajpa.dto.QueryWarmUpResult;
+import study.datajpa.dto.RepositoryMethodStats;
+import study.datajpa.dto.UsernameIndexStats;
+import study.datajpa.monitoring.CacheStatisticsReader;
+import study.datajpa.monitoring.LockMetrics;
+import study.datajpa.monitoring.RepositoryMetrics;
+import study.datajpa.repository.QueryWarmUp;
+import study.datajpa.repository.UsernameIndex;
+
+import java.util.List;
+
+//운영 확인용 내부 지표
+@RestController
+@RequestMapping("/internal")
+@RequiredArgsConstructor
+public class InternalMetricsController {
+
+    private final CacheStatisticsReader cacheStatisticsReader;
+    private final LockMetrics lockMetrics;
+    private final MemberUsernameCache memberUsernameCache;
+    private final UsernameIndex usernameIndex;
+    private final RepositoryMetrics repositoryMetrics;
+    private final ObjectProvider<ReplicaRouting> replicaRouting; //라우팅을 켰을 때만 존재
+    private final ObjectProvider<QueryWarmUp> queryWarmUp; //datajpa.warm-up.enabled
+
+    @GetMapping("/cache")
+    public List<CacheRegionStats> cache() {
+        return cacheStatisticsReader.read();
+    }
+
+    @GetMapping("/repositories")
+    public List<RepositoryMethodStats> repositories() {
+        return repositoryMetrics.read();
+    }
+
+    //수집 주기마다 호출: 직전 구간 값을 반환하고 0부터 다시 센다.
+    @PostMapping("/repositories/reset")
+    public List<RepositoryMethodStats> resetRepositories() {
+        return repositoryMetrics.readAndReset();
+    }
+
+    @GetMapping("/near-cache")
+    public NearCacheStats nearCache() {
+        return memberUsernameCache.stats();
+    }
+
+    @GetMapping("/username-index")
+    public UsernameIndexStats usernameIndex() {
+        return usernameIndex.stats();
+    }
+
+    //이벤트가 없는 bulk update/delete로 username을 바꾼 뒤 호출
+    @PostMapping("/username-index/rebuild")
+    public UsernameIndexStats rebuildUsernameIndex() {
+        usernameIndex.rebuild();
+        return usernameIndex.stats();
+    }
+
+    @GetMapping("/locks")
+    public List<LockContentionStats> locks() {
+        return lockMetrics.read();
+    }
+
+    @GetMapping("/warm-up")
+    public ResponseEntity<List<QueryWarmUpResult>> warmUp() {
+        QueryWarmUp warmUp = queryWarmUp.getIfAvailable();
+        return warmUp == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(warmUp.getResults());
+    }
+
+    @GetMapping("/datasource")
+    public ResponseEntity<DataSourceRouteStats> datasource() {
+        ReplicaRouting routing = replicaRouting.getIfAvailable();
+        return routing == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(routing.stats());
+    }
+}
@@ -4,45 +4,126 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.datajpa.dto.CursorPage;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.entity.Member;
+import study.datajpa.repository.BulkIngestRepository;
+import study.datajpa.repository.CountStrategy;
+import study.datajpa.repository.MemberCursor;
 import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.UsernameIndex;
 
 import javax.annotation.PostConstruct;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 2000; //spring.data.web.pageable.max-page-size와 동일
+    private static final int MAX_SEARCH_SIZE = 100;
+
     private final MemberRepository memberRepository;
+    private final BulkIngestRepository bulkIngestRepository;
+    private final MemberExporter memberExporter;
+    private final MemberQueryExecutor memberQueryExecutor;
+    private final MemberUsernameCache memberUsernameCache;
+    private final UsernameIndex usernameIndex;
 
+    //엔티티 전체 대신 username만, 같은 id 동시 요청은 조회 한 번으로 합친다.
     @GetMapping("/members/{id}")
-    public String findMember(@PathVariable("id") Long id) {
-        Member member = memberRepository.findById(id).get();
-        return member.getUsername();
+    public CompletableFuture<String> findMember(@PathVariable("id") Long id) {
+        return memberUsernameCache.get(id);
     }
 
-    //도메인 클래스 컨버터
+    //도메인 클래스 컨버터(@PathVariable Member)는 요청마다 findById로 엔티티를 읽으므로 같은 near cache를 쓴다.
     @GetMapping("/members2/{id}")
-    public String findMember2(@PathVariable("id") Member member) {
-        return member.getUsername();
+    public CompletableFuture<String> findMember2(@PathVariable("id") Long id) {
+        return memberUsernameCache.get(id);
     }
 
     @GetMapping("/members")
-    public Page<MemberDto> list(@PageableDefault(size = 5, sort = "username") Pageable pageable) {
-        Page<Member> members = memberRepository.findAll(pageable);
-//        return members.map(m -> new MemberDto(m.getId(), m.getUsername(), null));
-        return members.map(MemberDto::new);
+    public CompletableFuture<Page<MemberDto>> list(@PageableDefault(size = 5, sort = "username") Pageable pageable,
+                                @RequestParam(value = "count", defaultValue = "EXACT") CountStrategy countStrategy) {
+        return memberQueryExecutor.readOnly(() -> {
+            Page<Member> members = memberRepository.findAll(pageable, countStrategy);
+//            return members.map(m -> new MemberDto(m.getId(), m.getUsername(), null));
+            memberRepository.prefetchTeams(members.getContent()); //페이지 조회 1번 + team 조회 1번
+            return members.map(MemberDto::new);
+        });
+    }
+
+    //cursor 파라미터가 있으면 keyset 페이징 (첫 페이지는 cursor= 빈 값)
+    @GetMapping(value = "/members", params = "cursor")
+    public CompletableFuture<CursorPage<MemberDto>> listByCursor(@RequestParam("cursor") String cursor,
+                                              @RequestParam(value = "size", defaultValue = "5") int size) {
+        MemberCursor memberCursor;
+        try {
+            memberCursor = MemberCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        return memberQueryExecutor.readOnly(() -> {
+            CursorPage<Member> page = memberRepository.findByCursor(memberCursor, pageSize);
+            memberRepository.prefetchTeams(page.getContent());
+            return page.map(MemberDto::new);
+        });
+    }
+
+    //username 검색(type-ahead): DB 대신 메모리 인덱스, 3글자 이상은 포함 검색 / 1~2글자는 prefix 검색
+    @GetMapping("/members/search")
+    public List<MemberDto> search(@RequestParam("q") String q,
+                                  @RequestParam(value = "size", defaultValue = "10") int size) {
+        if (q.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q는 비어 있을 수 없습니다.");
+        }
+        if (!usernameIndex.isLoaded()) { //기동 후 백그라운드 적재 중
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "username index를 적재하는 중입니다.");
+        }
+        return usernameIndex.search(q, Math.max(1, Math.min(size, MAX_SEARCH_SIZE)));
+    }
+
+    //NDJSON 또는 CSV로 전체 member를 스트리밍 (응답은 별도 스레드에서 써진다)
+    @GetMapping("/members/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat format) {
+        StreamingResponseBody body = out -> memberExporter.export(format, out);
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=members." + format.name().toLowerCase())
+                .body(body);
+    }
+
+    //풀이 가득 찼거나 시간 안에 끝나지 않으면 기다리게 하지 않고 바로 503
+    @ExceptionHandler({RejectedExecutionException.class, TimeoutException.class})
+    public ResponseEntity<Void> overloaded() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
     }
 
 //    @PostConstruct //초기화 작업을 수행하기 위해 메서드에 지정할 수 있습니다.
     public void init() {
-        for (int i=0; i< 100; i++) {
-            memberRepository.save(new Member("user" + i, i));
-        }
+        //save()를 100번 호출하는 대신 jdbc batch로 한 번에 저장
+        bulkIngestRepository.saveMembers(IntStream.range(0, 100)
+                .mapToObj(i -> new Member("user" + i, i))
+                .collect(Collectors.toList()));
     }
 }
@@ -0,0 +1,96 @@
+package study.datajpa.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * member 전체를 한 줄씩 출력한다.
+ * 조회는 스트리밍 + detach, 출력은 버퍼 단위로 흘려보내므로 테이블 크기와 상관없이 힙 사용량이 일정하다.
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberExporter {
+
+    private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${datajpa.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Transactional(readOnly = true)
+    public long export(ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        long rows = format == ExportFormat.CSV ? writeCsv(writer) : writeNdjson(writer);
+        writer.flush();
+        return rows;
+    }
+
+    //SequenceWriter를 close 하면 응답 스트림까지 닫히므로 flush만 한다.
+    private long writeNdjson(Writer writer) throws IOException {
+        SequenceWriter json = objectMapper.writerFor(MemberDto.class)
+                .withRootValueSeparator("\n")
+                .writeValues(writer);
+        long rows = memberRepository.forEachMember(fetchSize, member -> {
+            try {
+                json.write(toDto(member));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        json.flush();
+        if (rows > 0) {
+            writer.write('\n');
+        }
+        return rows;
+    }
+
+    private long writeCsv(Writer writer) throws IOException {
+        writer.write("id,username,teamName\n");
+        return memberRepository.forEachMember(fetchSize, member -> {
+            try {
+                writer.write(String.valueOf(member.getId()));
+                writer.write(',');
+                writeCsvValue(writer, member.getUsername());
+                writer.write(',');
+                writeCsvValue(writer, member.getTeam() != null ? member.getTeam().getName() : null);
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static MemberDto toDto(Member member) {
+        return new MemberDto(member.getId(), member.getUsername(),
+                member.getTeam() != null ? member.getTeam().getName() : null);
+    }
+
+    //쉼표, 따옴표, 줄바꿈이 있으면 따옴표로 감싼다.
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
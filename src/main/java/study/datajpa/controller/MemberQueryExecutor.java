@@ -0,0 +1,132 @@
+package study.datajpa.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.datasource.ReadYourWrites;
+import study.datajpa.monitoring.SqlCountScope;
+import study.datajpa.monitoring.SqlStatementCounter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * member 조회를 서블릿 스레드 대신 커넥션 풀 크기만큼의 스레드에서 실행한다.
+ * 커넥션보다 많은 요청이 동시에 DB를 기다려도 얻는 게 없으므로, 큐가 차면 바로 거절(503)해서
+ * 과부하에서도 받아들인 요청의 지연시간이 커지지 않게 한다.
+ * timeout을 넘기면 큐에서 기다리던 작업은 취소하고, 실행 중인 쿼리는 트랜잭션 timeout(JDBC query timeout)으로 끊는다.
+ */
+@Slf4j
+@Component
+public class MemberQueryExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    private final TransactionTemplate readOnly;
+    private final TransactionTemplate primary;
+    private final SqlStatementCounter sqlStatementCounter;
+    private final long timeoutMillis;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public MemberQueryExecutor(PlatformTransactionManager transactionManager, SqlStatementCounter sqlStatementCounter,
+                               @Value("${datajpa.async.threads:${spring.datasource.hikari.maximum-pool-size:10}}") int threads,
+                               @Value("${datajpa.async.queue-capacity:50}") int queueCapacity,
+                               @Value("${datajpa.async.timeout-millis:5000}") long timeoutMillis) {
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "member-query-" + sequence.incrementAndGet()),
+                (runnable, pool) -> {
+                    rejected.incrementAndGet();
+                    throw new RejectedExecutionException("member query queue is full (" + queueCapacity + ")");
+                });
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        //초 단위라 올림, Hibernate가 남은 시간을 각 statement의 query timeout으로 건다.
+        this.readOnly.setTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutMillis + 999)));
+        //readOnly가 아니면 replica로 라우팅되지 않는다. (ReplicaRoutingDataSource)
+        this.primary = new TransactionTemplate(transactionManager);
+        this.primary.setTimeout(readOnly.getTimeout());
+        this.sqlStatementCounter = sqlStatementCounter;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 읽기 전용 트랜잭션 안에서 query를 실행한다. (지연로딩/DTO 변환도 이 안에서 끝내야 한다)
+     * 큐가 가득 차면 RejectedExecutionException, timeout을 넘기면 TimeoutException으로 완료된다.
+     */
+    public <T> CompletableFuture<T> readOnly(Supplier<T> query) {
+        return submit(readOnly, query);
+    }
+
+    /**
+     * readOnly와 같지만 replica 대신 primary에서 읽는다. 방금 커밋된 변경을 복제 지연 없이 봐야 할 때 사용한다.
+     */
+    public <T> CompletableFuture<T> readFromPrimary(Supplier<T> query) {
+        return submit(primary, query);
+    }
+
+    private <T> CompletableFuture<T> submit(TransactionTemplate transactionTemplate, Supplier<T> query) {
+        //요청 스레드의 SqlCountScope(SqlCountFilter)는 비동기 메서드가 반환될 때 닫히므로 작업 스레드에서 같은 이름으로 연다.
+        String scopeName = sqlStatementCounter.currentScopeName();
+        //호출자가 방금 쓴 값은 작업 스레드에서도 primary에서 읽도록 (ReplicaRoutingDataSource)
+        ReadYourWrites.Token token = ReadYourWrites.current();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(execute(transactionTemplate, scopeName, token, query));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((value, e) -> {
+            if (e instanceof TimeoutException) {
+                //JDBC 호출 중인 스레드를 interrupt하면 커넥션이 깨질 수 있으므로 실행 중인 작업은 query timeout에 맡긴다.
+                task.cancel(false);
+                executor.remove((Runnable) task);
+            }
+        });
+        return result;
+    }
+
+    private <T> T execute(TransactionTemplate transactionTemplate, String scopeName, ReadYourWrites.Token token,
+                          Supplier<T> query) {
+        SqlCountScope scope = scopeName != null ? sqlStatementCounter.open(scopeName) : null;
+        ReadYourWrites.Token previous = ReadYourWrites.bind(token);
+        Throwable failure = null;
+        try {
+            return transactionTemplate.execute(status -> query.get());
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            ReadYourWrites.restore(previous);
+            if (scope != null) {
+                scope.closeAfter(failure);
+            }
+        }
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
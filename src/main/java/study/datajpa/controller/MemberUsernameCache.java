@@ -0,0 +1,192 @@
+package study.datajpa.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.datajpa.dto.NearCacheStats;
+import study.datajpa.entity.MemberChangedEvent;
+import study.datajpa.entity.MembersBulkChangedEvent;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * GET /members/{id}용 id -> username near cache. username 하나 때문에 Member 엔티티 전체를 읽지 않는다.
+ *
+ * 같은 id의 동시 miss는 진행 중인 조회를 같이 기다려서, 인기 id라도 DB 조회는 한 번만 나간다.
+ * 크기는 max-size(LRU)로 제한하고, member 수정/삭제는 MemberChangedEvent를 받아 커밋 후에 지운다.
+ * bulk 저장/update(MembersBulkChangedEvent)는 어떤 id가 바뀌었는지 모르므로 커밋 후 전부 비운다.
+ * 이벤트가 없는 JPQL bulk update/delete를 직접 실행한 결과는 ttl까지 남을 수 있다.
+ * 무효화 직후(replica 지연 허용 시간 안)의 조회는 replica에 아직 이전 값이 있을 수 있으므로 primary에서 읽는다.
+ */
+@Component
+public class MemberUsernameCache {
+
+    private final MemberRepository memberRepository;
+    private final MemberQueryExecutor memberQueryExecutor;
+    private final long ttlNanos;
+    private final long lagToleranceNanos;
+    private final Map<Long, Entry> entries; //access order, 접근은 synchronized (loading 제거도 같은 락 안에서)
+    private final Map<Long, Long> invalidatedNanos = new LinkedHashMap<>(); //무효화 순서, lag 지나면 제거, 접근은 synchronized
+    private volatile long invalidatedAllNanos; //마지막 invalidateAll 시각
+    private final ConcurrentMap<Long, CompletableFuture<String>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public MemberUsernameCache(MemberRepository memberRepository, MemberQueryExecutor memberQueryExecutor,
+                               @Value("${datajpa.near-cache.max-size:10000}") int maxSize,
+                               @Value("${datajpa.near-cache.ttl-seconds:60}") long ttlSeconds,
+                               @Value("${datajpa.datasource.replica.lag-tolerance-millis:1000}") long lagToleranceMillis) {
+        this.memberRepository = memberRepository;
+        this.memberQueryExecutor = memberQueryExecutor;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.lagToleranceNanos = TimeUnit.MILLISECONDS.toNanos(lagToleranceMillis);
+        this.invalidatedAllNanos = System.nanoTime() - lagToleranceNanos; //기동 직후는 replica
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 캐시에 있으면 바로, 없으면 읽기 전용 풀에서 username만 조회한다.
+     * 없는 id는 NoSuchElementException으로 완료되고 캐시하지 않는다.
+     */
+    public CompletableFuture<String> get(Long id) {
+        String username = cached(id);
+        if (username != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(username);
+        }
+        misses.increment();
+
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = loading.putIfAbsent(id, created);
+        if (inFlight != null) {
+            coalesced.increment();
+            return inFlight;
+        }
+
+        loads.increment();
+        try {
+            Supplier<String> query = () -> memberRepository.findUsernameById(id).orElseThrow();
+            (invalidatedRecently(id) ? memberQueryExecutor.readFromPrimary(query) : memberQueryExecutor.readOnly(query))
+                    .whenComplete((loaded, error) -> {
+                        //조회 중에 무효화됐으면 loading에서 이미 빠졌으므로 이전 값을 넣지 않는다.
+                        //invalidate와 같은 락 안에서 확인하고 넣어야 그 사이의 무효화를 놓치지 않는다.
+                        synchronized (entries) {
+                            if (loading.remove(id, created) && error == null) {
+                                entries.put(id, new Entry(loaded, System.nanoTime()));
+                            }
+                        }
+                        if (error == null) {
+                            created.complete(loaded);
+                        } else {
+                            created.completeExceptionally(error);
+                        }
+                    });
+        } catch (RuntimeException e) { //풀이 가득 참 -> 같이 기다리던 요청도 실패
+            loading.remove(id, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+        return created;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true) //커밋 후, 트랜잭션 밖이면 바로
+    public void onMemberChanged(MemberChangedEvent event) {
+        invalidate(event.getMemberId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMembersBulkChanged(MembersBulkChangedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        invalidations.increment();
+        invalidatedAllNanos = System.nanoTime();
+        synchronized (entries) {
+            loading.clear();
+            entries.clear();
+        }
+    }
+
+    public void invalidate(Long id) {
+        invalidations.increment();
+        long now = System.nanoTime();
+        synchronized (invalidatedNanos) {
+            invalidatedNanos.remove(id); //맨 뒤로
+            invalidatedNanos.put(id, now);
+            expireInvalidations(now);
+        }
+        synchronized (entries) {
+            loading.remove(id);
+            entries.remove(id);
+        }
+    }
+
+    public NearCacheStats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new NearCacheStats(size, hits.sum(), misses.sum(), loads.sum(), coalesced.sum(), invalidations.sum());
+    }
+
+    private boolean invalidatedRecently(Long id) {
+        if (System.nanoTime() - invalidatedAllNanos < lagToleranceNanos) {
+            return true;
+        }
+        synchronized (invalidatedNanos) {
+            expireInvalidations(System.nanoTime());
+            return invalidatedNanos.containsKey(id);
+        }
+    }
+
+    //무효화 순서대로 들어 있으므로 앞에서부터 lag 지난 것만 지운다.
+    private void expireInvalidations(long now) {
+        Iterator<Long> times = invalidatedNanos.values().iterator();
+        while (times.hasNext() && now - times.next() >= lagToleranceNanos) {
+            times.remove();
+        }
+    }
+
+    private String cached(Long id) {
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.loadedNanos > ttlNanos) {
+                entries.remove(id);
+                return null;
+            }
+            return entry.username;
+        }
+    }
+
+    private static class Entry {
+        final String username;
+        final long loadedNanos;
+
+        Entry(String username, long loadedNanos) {
+            this.username = username;
+            this.loadedNanos = loadedNanos;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package study.datajpa.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.time.Clock;
+
+/**
+ * read-your-writes 판단에 쓰는 호출자별 마지막 쓰기 커밋 시각(Token).
+ * HTTP 요청은 ReadYourWritesFilter가 요청(세션이 있으면 세션)의 Token을 바인딩하고,
+ * MemberQueryExecutor는 호출한 스레드의 Token을 작업 스레드에 넘긴다. 바인딩이 없는 스레드는 스레드별 Token을 쓴다.
+ * 실제로 insert/update/delete를 실행한 트랜잭션만 커밋 시각을 남긴다. (ReadYourWritesListener)
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Token> CURRENT = ThreadLocal.withInitial(Token::new);
+
+    private ReadYourWrites() {
+    }
+
+    public static Token current() {
+        return CURRENT.get();
+    }
+
+    //token을 현재 스레드에 바인딩하고 이전 Token을 반환한다. (restore로 되돌린다)
+    public static Token bind(Token token) {
+        Token previous = CURRENT.get();
+        CURRENT.set(token);
+        return previous;
+    }
+
+    public static void restore(Token previous) {
+        CURRENT.set(previous);
+    }
+
+    //현재 트랜잭션이 커밋되면(트랜잭션 밖이면 바로) 현재 Token에 시각을 남긴다.
+    static void wrote(Clock clock) {
+        Token token = current();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            token.lastCommitMillis = clock.millis();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(ReadYourWrites.class)) {
+            return; //이 트랜잭션은 이미 등록됨
+        }
+        PendingCommit pending = new PendingCommit(token, clock);
+        TransactionSynchronizationManager.bindResource(ReadYourWrites.class, pending);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    //커밋 시점부터 지연을 센다. (긴 쓰기 트랜잭션이면 쓴 시점은 이미 오래 전)
+    private static final class PendingCommit implements TransactionSynchronization {
+
+        private final Token token;
+        private final Clock clock;
+
+        PendingCommit(Token token, Clock clock) {
+            this.token = token;
+            this.clock = clock;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ReadYourWrites.class);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(ReadYourWrites.class, this);
+        }
+
+        @Override
+        public void afterCommit() {
+            token.lastCommitMillis = clock.millis();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ReadYourWrites.class);
+        }
+    }
+
+    //HTTP 세션에 저장될 수 있다.
+    public static final class Token implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private static final long NONE = Long.MIN_VALUE;
+
+        private volatile long lastCommitMillis = NONE;
+
+        boolean committedWithin(long nowMillis, long toleranceMillis) {
+            long last = lastCommitMillis;
+            return last != NONE && nowMillis - last < toleranceMillis;
+        }
+    }
+}
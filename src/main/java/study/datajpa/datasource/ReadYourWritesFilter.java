@@ -0,0 +1,39 @@
+package study.datajpa.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+
+/**
+ * 요청 하나를 ReadYourWrites.Token 하나로 묶는다.
+ * HTTP 세션이 있으면 세션의 Token을 써서 같은 세션의 다음 요청도 방금 쓴 값을 primary에서 읽는다. (세션을 새로 만들지는 않음)
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String SESSION_ATTRIBUTE = ReadYourWrites.Token.class.getName();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        HttpSession session = request.getSession(false);
+        ReadYourWrites.Token token = session != null ? (ReadYourWrites.Token) session.getAttribute(SESSION_ATTRIBUTE) : null;
+        if (token == null) {
+            token = new ReadYourWrites.Token();
+            if (session != null) {
+                session.setAttribute(SESSION_ATTRIBUTE, token);
+            }
+        }
+
+        ReadYourWrites.Token previous = ReadYourWrites.bind(token);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.restore(previous);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package study.datajpa.datasource;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+
+import java.sql.SQLException;
+import java.time.Clock;
+
+/**
+ * insert/update/delete(executeUpdate, executeBatch)를 실행한 트랜잭션만 ReadYourWrites에 커밋 시각을 남긴다.
+ * 조회만 한 쓰기 트랜잭션(readOnly가 아님)은 replica 라우팅에 영향을 주지 않는다.
+ */
+public class ReadYourWritesListener extends JdbcEventListener {
+
+    private final Clock clock;
+
+    public ReadYourWritesListener(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(PreparedStatementInformation statementInformation, long timeElapsedNanos,
+                                     int rowCount, SQLException e) {
+        if (e == null) {
+            ReadYourWrites.wrote(clock);
+        }
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(StatementInformation statementInformation, long timeElapsedNanos,
+                                     String sql, int rowCount, SQLException e) {
+        if (e == null) {
+            ReadYourWrites.wrote(clock);
+        }
+    }
+
+    @Override
+    public void onAfterExecuteBatch(StatementInformation statementInformation, long timeElapsedNanos,
+                                    int[] updateCounts, SQLException e) {
+        if (e == null) {
+            ReadYourWrites.wrote(clock);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package study.datajpa.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import study.datajpa.dto.DataSourceRouteStats;
+
+import java.time.Clock;
+import java.util.Map;
+
+/**
+ * primary/replica 커넥션 풀과 라우팅 DataSource를 가진다.
+ * 내부 DataSource들을 빈으로 등록하면 p6spy가 각각 감싸서 SQL이 두 번 집계되므로 여기서 직접 관리한다.
+ */
+public class ReplicaRouting implements DisposableBean {
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final ReplicaRoutingDataSource router;
+
+    ReplicaRouting(Binder binder, long lagToleranceMillis, Clock clock) {
+        this.primary = createPool(binder, "spring.datasource", "primary");
+        this.replica = createPool(binder, "datajpa.datasource.replica", "replica");
+        this.router = new ReplicaRoutingDataSource(lagToleranceMillis, clock);
+        router.setTargetDataSources(Map.of(
+                ReplicaRoutingDataSource.Route.PRIMARY, primary,
+                ReplicaRoutingDataSource.Route.REPLICA, replica));
+        router.setDefaultTargetDataSource(primary);
+        router.afterPropertiesSet();
+    }
+
+    private static HikariDataSource createPool(Binder binder, String prefix, String poolName) {
+        DataSourceProperties properties = binder.bind(prefix, DataSourceProperties.class)
+                .orElseThrow(() -> new IllegalStateException(prefix + " 설정이 없습니다."));
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind(prefix + ".hikari", Bindable.ofInstance(dataSource)); //maximum-pool-size 등
+        dataSource.setPoolName(poolName);
+        return dataSource;
+    }
+
+    ReplicaRoutingDataSource getRouter() {
+        return router;
+    }
+
+    public DataSourceRouteStats stats() {
+        return router.stats();
+    }
+
+    @Override
+    public void destroy() {
+        replica.close();
+        primary.close();
+    }
+}
@@ -0,0 +1,57 @@
+package study.datajpa.datasource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+
+/**
+ * datajpa.datasource.replica.url이 있으면 읽기/쓰기 라우팅 DataSource를 사용한다. (없으면 기존 단일 DataSource)
+ *
+ * LazyConnectionDataSourceProxy -> p6spy -> ReplicaRoutingDataSource 순서로 감싼다.
+ * p6spy는 getConnection에서 바로 메타데이터를 조회하므로 p6spy가 바깥에 있으면 트랜잭션 시작 시점(readOnly 설정 전)에 커넥션을 얻어버린다.
+ * 그래서 lazyRoutingDataSource는 decorator.datasource.exclude-beans로 p6spy 대상에서 뺀다.
+ * read-your-writes는 호출자(요청/세션)별로 판단한다. (ReadYourWrites)
+ */
+@Configuration
+@ConditionalOnProperty("datajpa.datasource.replica.url")
+public class ReplicaRoutingConfig {
+
+    //Clock 빈이 있으면 그 시각으로 복제 지연을 센다. (테스트)
+    @Bean
+    public ReplicaRouting replicaRouting(Environment environment, ObjectProvider<Clock> clock,
+                                         @Value("${datajpa.datasource.replica.lag-tolerance-millis:1000}") long lagToleranceMillis) {
+        return new ReplicaRouting(Binder.get(environment), lagToleranceMillis, clock.getIfAvailable(Clock::systemUTC));
+    }
+
+    //p6spy가 JdbcEventListener 빈을 등록한다.
+    @Bean
+    public ReadYourWritesListener readYourWritesListener(ObjectProvider<Clock> clock) {
+        return new ReadYourWritesListener(clock.getIfAvailable(Clock::systemUTC));
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter();
+    }
+
+    @Bean
+    public DataSource routingDataSource(ReplicaRouting replicaRouting) {
+        return replicaRouting.getRouter();
+    }
+
+    @Bean
+    @Primary
+    public DataSource lazyRoutingDataSource(@Qualifier("routingDataSource") DataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
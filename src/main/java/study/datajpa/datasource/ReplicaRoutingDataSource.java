@@ -0,0 +1,55 @@
+package study.datajpa.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.dto.DataSourceRouteStats;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 읽기 전용 트랜잭션은 replica, 나머지는 primary로 보낸다.
+ * 트랜잭션 시작 시점이 아니라 첫 SQL 시점에 커넥션을 얻어야 readOnly 여부를 알 수 있으므로 LazyConnectionDataSourceProxy로 감싸서 사용한다.
+ *
+ * 복제 지연: 호출자(요청/세션, ReadYourWrites)가 마지막으로 쓰기 커밋한 뒤 lagTolerance 안의 읽기는 primary로 보낸다. (read-your-writes)
+ * 다른 호출자나 다른 인스턴스의 쓰기는 기다리지 않으므로 복제 지연만큼 이전 값을 볼 수 있다.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private final long lagToleranceMillis;
+    private final Clock clock;
+
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder lagFallbacks = new LongAdder();
+
+    ReplicaRoutingDataSource(long lagToleranceMillis, Clock clock) {
+        this.lagToleranceMillis = lagToleranceMillis;
+        this.clock = clock;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryConnections.increment();
+            return Route.PRIMARY;
+        }
+
+        if (ReadYourWrites.current().committedWithin(clock.millis(), lagToleranceMillis)) {
+            lagFallbacks.increment();
+            primaryConnections.increment();
+            return Route.PRIMARY;
+        }
+        replicaConnections.increment();
+        return Route.REPLICA;
+    }
+
+    DataSourceRouteStats stats() {
+        return new DataSourceRouteStats(primaryConnections.sum(), replicaConnections.sum(), lagFallbacks.sum(),
+                lagToleranceMillis);
+    }
+}
@@ -0,0 +1,53 @@
+package study.datajpa.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+@Getter
+@ToString
+public class BulkUpdateReport {
+
+    private final String jobId;
+    private final int totalRanges;
+    private final int completedRanges; //이번 실행에서 처리한 구간
+    private final int skippedRanges;   //이전 실행에서 이미 처리된 구간
+    private final long updatedRows;
+    private final long elapsedMillis;
+    private final List<ChunkTiming> chunks;
+    private final List<String> failures;
+
+    public BulkUpdateReport(String jobId, int totalRanges, int completedRanges, int skippedRanges, long updatedRows,
+                            long elapsedMillis, List<ChunkTiming> chunks, List<String> failures) {
+        this.jobId = jobId;
+        this.totalRanges = totalRanges;
+        this.completedRanges = completedRanges;
+        this.skippedRanges = skippedRanges;
+        this.updatedRows = updatedRows;
+        this.elapsedMillis = elapsedMillis;
+        this.chunks = chunks;
+        this.failures = failures;
+    }
+
+    public boolean isSucceeded() {
+        return failures.isEmpty();
+    }
+
+    @Getter
+    @ToString
+    public static class ChunkTiming {
+
+        private final long rangeStart;
+        private final long rangeEnd;
+        private final int updatedRows;
+        private final long elapsedMillis;
+
+        public ChunkTiming(long rangeStart, long rangeEnd, int updatedRows, long elapsedMillis) {
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            this.updatedRows = updatedRows;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package study.datajpa.dto;
+
+import lombok.Getter;
+
+@Getter
+public class DataSourceRouteStats {
+
+    private final long primaryConnections;
+    private final long replicaConnections;
+    private final long lagFallbacks; //읽기 전용이지만 최근 쓰기 때문에 primary로 보낸 횟수
+    private final long lagToleranceMillis;
+
+    public DataSourceRouteStats(long primaryConnections, long replicaConnections, long lagFallbacks, long lagToleranceMillis) {
+        this.primaryConnections = primaryConnections;
+        this.replicaConnections = replicaConnections;
+        this.lagFallbacks = lagFallbacks;
+        this.lagToleranceMillis = lagToleranceMillis;
+    }
+}
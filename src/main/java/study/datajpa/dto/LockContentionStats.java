@@ -0,0 +1,28 @@
+package study.datajpa.dto;
+
+import lombok.Getter;
+
+@Getter
+public class LockContentionStats {
+
+    private final String operation;
+    private final long lockWaits; //비관적 락 획득 횟수
+    private final long lockWaitMillis; //락 획득까지 기다린 시간 합계
+    private final long maxLockWaitMillis;
+    private final long conflicts; //낙관적 락 충돌 횟수
+    private final long retries;
+    private final long backoffMillis; //재시도 전 대기 시간 합계
+    private final long exhausted; //재시도를 다 쓰고 실패한 횟수
+
+    public LockContentionStats(String operation, long lockWaits, long lockWaitMillis, long maxLockWaitMillis,
+                               long conflicts, long retries, long backoffMillis, long exhausted) {
+        this.operation = operation;
+        this.lockWaits = lockWaits;
+        this.lockWaitMillis = lockWaitMillis;
+        this.maxLockWaitMillis = maxLockWaitMillis;
+        this.conflicts = conflicts;
+        this.retries = retries;
+        this.backoffMillis = backoffMillis;
+        this.exhausted = exhausted;
+    }
+}
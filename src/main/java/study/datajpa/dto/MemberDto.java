@@ -19,5 +19,7 @@ public class MemberDto {
     public MemberDto(Member member) {
         this.id = member.getId();
         this.username = member.getUsername();
+        //team은 @BatchSize로 묶어서 초기화되므로 페이지 단위로 매핑해도 N+1이 나지 않는다.
+        this.teamName = member.getTeam() != null ? member.getTeam().getName() : null;
     }
 }
@@ -0,0 +1,23 @@
+package study.datajpa.dto;
+
+import lombok.Getter;
+
+@Getter
+public class NearCacheStats {
+
+    private final long size;
+    private final long hitCount;
+    private final long missCount;
+    private final long loadCount; //실제 DB 조회 횟수
+    private final long coalescedCount; //진행 중인 조회를 기다린 miss
+    private final long invalidationCount;
+
+    public NearCacheStats(long size, long hitCount, long missCount, long loadCount, long coalescedCount, long invalidationCount) {
+        this.size = size;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadCount = loadCount;
+        this.coalescedCount = coalescedCount;
+        this.invalidationCount = invalidationCount;
+    }
+}
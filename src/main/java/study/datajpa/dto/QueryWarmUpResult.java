@@ -0,0 +1,24 @@
+package study.datajpa.dto;
+
+import lombok.Getter;
+
+@Getter
+public class QueryWarmUpResult {
+
+    private final String query; //MemberRepository.findUser, named:Member.findByName ...
+    private final String kind; //JPQL, NATIVE, DERIVED, NAMED
+    private final long compileMicros; //JPQL 파싱 -> query plan cache (NATIVE, DERIVED는 실행 시)
+    private final long firstExecutionMicros;
+    private final long lastExecutionMicros;
+    private final String error; //실패/건너뜀 사유, 정상이면 null
+
+    public QueryWarmUpResult(String query, String kind, long compileMicros, long firstExecutionMicros,
+                             long lastExecutionMicros, String error) {
+        this.query = query;
+        this.kind = kind;
+        this.compileMicros = compileMicros;
+        this.firstExecutionMicros = firstExecutionMicros;
+        this.lastExecutionMicros = lastExecutionMicros;
+        this.error = error;
+    }
+}
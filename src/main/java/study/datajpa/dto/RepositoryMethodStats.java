@@ -0,0 +1,33 @@
+package study.datajpa.dto;
+
+import lombok.Getter;
+
+@Getter
+public class RepositoryMethodStats {
+
+    private final String repository;
+    private final String method;
+    private final long calls;
+    private final long errors;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+    private final long rows; //반환한 row(엔티티/DTO) 수 합계
+    private final long statements; //호출 중 실행된 SQL 수 합계
+
+    public RepositoryMethodStats(String repository, String method, long calls, long errors,
+                                 long p50Micros, long p99Micros, long p999Micros, long maxMicros,
+                                 long rows, long statements) {
+        this.repository = repository;
+        this.method = method;
+        this.calls = calls;
+        this.errors = errors;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+        this.rows = rows;
+        this.statements = statements;
+    }
+}
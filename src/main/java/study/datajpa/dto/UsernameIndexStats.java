@@ -0,0 +1,28 @@
+package study.datajpa.dto;
+
+import lombok.Getter;
+
+@Getter
+public class UsernameIndexStats {
+
+    private final long indexedCount; //스냅샷에 들어 있는 member
+    private final long pendingCount; //스냅샷 이후 저장/수정/삭제된 member (다음 compaction까지 따로 검색)
+    private final long trigramCount;
+    private final long estimatedBytes; //스냅샷 배열 + pending 추정치
+    private final long searchCount;
+    private final long rebuildCount; //DB에서 전체를 다시 읽은 횟수
+    private final long compactionCount; //pending을 스냅샷에 합친 횟수
+    private final long lastBuildMillis;
+
+    public UsernameIndexStats(long indexedCount, long pendingCount, long trigramCount, long estimatedBytes,
+                              long searchCount, long rebuildCount, long compactionCount, long lastBuildMillis) {
+        this.indexedCount = indexedCount;
+        this.pendingCount = pendingCount;
+        this.trigramCount = trigramCount;
+        this.estimatedBytes = estimatedBytes;
+        this.searchCount = searchCount;
+        this.rebuildCount = rebuildCount;
+        this.compactionCount = compactionCount;
+        this.lastBuildMillis = lastBuildMillis;
+    }
+}
@@ -0,0 +1,32 @@
+package study.datajpa.entity;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * flush(auto flush 포함)가 시작될 때 AuditingScope의 시각을 새로 잡고, 끝나면 비운다.
+ * hibernate.session.events.auto로 세션마다 생성된다.
+ */
+public class AuditingFlushListener extends BaseSessionEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void flushStart() {
+        AuditingScope.flushStarted();
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        AuditingScope.flushed();
+    }
+
+    @Override
+    public void partialFlushStart() {
+        AuditingScope.flushStarted();
+    }
+
+    @Override
+    public void partialFlushEnd(int numberOfEntities, int numberOfCollections) {
+        AuditingScope.flushed();
+    }
+}
@@ -0,0 +1,51 @@
+package study.datajpa.entity;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.AuditorAware;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import java.time.LocalDateTime;
+
+/**
+ * BaseTimeEntity/BaseEntity용 감사 리스너.
+ * AuditingEntityListener는 엔티티마다 리플렉션으로 어노테이션 필드를 찾아 값을 넣고 AuditorAware/now()를 매번 호출한다.
+ * 여기서는 필드를 직접 채우고 값은 AuditingScope에서 재사용한다. (작성자는 트랜잭션, 시각은 flush 단위)
+ * hibernate가 SpringBeanContainer로 생성하므로 AuditorAware를 주입받을 수 있다.
+ * 백그라운드 부트스트랩(fast-startup)에서는 EMF 생성 스레드가 여기를 만들기 때문에
+ * 타입 조회 없이 주입되는 ObjectProvider로 받고 처음 쓸 때 꺼낸다. (메인 스레드와 싱글톤 락 교착 방지)
+ */
+public class AuditingListener {
+
+    private final ObjectProvider<AuditorAware<String>> auditorAware;
+
+    public AuditingListener(ObjectProvider<AuditorAware<String>> auditorAware) {
+        this.auditorAware = auditorAware;
+    }
+
+    @PrePersist
+    public void touchForCreate(Object target) {
+        LocalDateTime now = AuditingScope.now();
+        if (target instanceof BaseTimeEntity) {
+            ((BaseTimeEntity) target).created(now);
+        }
+        if (target instanceof BaseEntity) {
+            ((BaseEntity) target).createdBy(auditor());
+        }
+    }
+
+    @PreUpdate
+    public void touchForUpdate(Object target) {
+        LocalDateTime now = AuditingScope.now();
+        if (target instanceof BaseTimeEntity) {
+            ((BaseTimeEntity) target).modified(now);
+        }
+        if (target instanceof BaseEntity) {
+            ((BaseEntity) target).modifiedBy(auditor());
+        }
+    }
+
+    private String auditor() {
+        return (String) AuditingScope.auditor(() -> auditorAware.getObject().getCurrentAuditor().orElse(null));
+    }
+}
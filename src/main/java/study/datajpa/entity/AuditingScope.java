@@ -0,0 +1,102 @@
+package study.datajpa.entity;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 감사(auditing) 값을 트랜잭션 단위로 재사용한다.
+ * 작성자는 트랜잭션당 한 번 구해서 bulk insert에서 엔티티마다 다시 구하지 않게 한다.
+ * 시각은 flush 안에서는 flush 시작 시각 하나를 쓰고, flush 밖(persist 시점의 @PrePersist)에서는 MAX_AGE까지만 재사용한다.
+ * REQUIRES_NEW로 중단된 바깥 트랜잭션의 값은 안쪽 트랜잭션과 섞이지 않는다.
+ * 트랜잭션 밖에서는 매번 새로 구한다.
+ */
+public final class AuditingScope {
+
+    static final long MAX_AGE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private AuditingScope() {
+    }
+
+    public static LocalDateTime now() {
+        Values values = current();
+        if (values == null) {
+            return LocalDateTime.now();
+        }
+        if (values.now == null || (!values.flushing && System.nanoTime() - values.nowNanos > MAX_AGE_NANOS)) {
+            values.now = LocalDateTime.now();
+            values.nowNanos = System.nanoTime();
+        }
+        return values.now;
+    }
+
+    public static Object auditor(Supplier<?> resolver) {
+        Values values = current();
+        if (values == null) {
+            return resolver.get();
+        }
+        if (!values.auditorResolved) {
+            values.auditor = resolver.get();
+            values.auditorResolved = true;
+        }
+        return values.auditor;
+    }
+
+    //flush 안에서 변경되는 엔티티는 flush 시작 시각을 같이 쓴다.
+    static void flushStarted() {
+        Values values = current();
+        if (values != null) {
+            values.now = null;
+            values.flushing = true;
+        }
+    }
+
+    //flush가 끝나면 다음 변경부터는 새 시각을 쓴다.
+    static void flushed() {
+        Values values = (Values) TransactionSynchronizationManager.getResource(AuditingScope.class);
+        if (values != null) {
+            values.now = null;
+            values.flushing = false;
+        }
+    }
+
+    private static Values current() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Values values = (Values) TransactionSynchronizationManager.getResource(AuditingScope.class);
+        if (values == null) {
+            values = new Values();
+            TransactionSynchronizationManager.bindResource(AuditingScope.class, values);
+            TransactionSynchronizationManager.registerSynchronization(values);
+        }
+        return values;
+    }
+
+    //바깥 트랜잭션이 중단(REQUIRES_NEW)되면 같이 떼어 두었다가 재개될 때 다시 붙인다.
+    private static final class Values implements TransactionSynchronization {
+        private LocalDateTime now;
+        private long nowNanos;
+        private boolean flushing;
+        private Object auditor;
+        private boolean auditorResolved;
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(AuditingScope.class);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(AuditingScope.class, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(AuditingScope.class);
+        }
+    }
+}
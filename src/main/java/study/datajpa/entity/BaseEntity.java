@@ -2,17 +2,11 @@ package study.datajpa.entity;
 
 import lombok.Getter;
 import org.springframework.data.annotation.CreatedBy;
-import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedBy;
-import org.springframework.data.annotation.LastModifiedDate;
-import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.Column;
-import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
-import java.time.LocalDateTime;
 
-@EntityListeners(AuditingEntityListener.class)
 @MappedSuperclass
 @Getter
 public class BaseEntity extends BaseTimeEntity {
@@ -23,4 +17,13 @@ public class BaseEntity extends BaseTimeEntity {
 
     @LastModifiedBy
     private String updateBy;
+
+    void createdBy(String auditor) {
+        this.createBy = auditor;
+        this.updateBy = auditor;
+    }
+
+    void modifiedBy(String auditor) {
+        this.updateBy = auditor;
+    }
 }
@@ -3,14 +3,13 @@ package study.datajpa.entity;
 import lombok.Getter;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
-import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.Column;
 import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
 import java.time.LocalDateTime;
 
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners(AuditingListener.class) //AuditingEntityListener 대신 필드를 직접 채움
 @MappedSuperclass
 @Getter
 public class BaseTimeEntity {
@@ -20,4 +19,13 @@ public class BaseTimeEntity {
 
     @LastModifiedDate
     private LocalDateTime lastModifiedDate;
+
+    void created(LocalDateTime now) {
+        this.createDate = now;
+        this.lastModifiedDate = now;
+    }
+
+    void modified(LocalDateTime now) {
+        this.lastModifiedDate = now;
+    }
 }
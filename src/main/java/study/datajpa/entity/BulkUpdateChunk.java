@@ -0,0 +1,55 @@
+package study.datajpa.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 범위 분할 bulk update에서 완료된 id 구간 기록.
+ * update와 같은 트랜잭션에 저장되므로, 기록이 있으면 해당 구간은 정확히 한 번 반영된 것이다.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_bulk_update_chunk", columnNames = {"job_id", "range_start"}))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString(of = {"jobId", "age", "rangeStart", "rangeEnd", "updatedRows", "elapsedMillis"})
+public class BulkUpdateChunk {
+
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bulk_update_chunk_seq")
+    @SequenceGenerator(name = "bulk_update_chunk_seq", sequenceName = "bulk_update_chunk_seq", allocationSize = 50)
+    @Column(name = "bulk_update_chunk_id")
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private String jobId;
+
+    private int age; //age >= 조건, 같은 job은 같은 값으로만 이어서 실행
+
+    @Column(name = "range_start", nullable = false)
+    private long rangeStart;
+
+    @Column(name = "range_end", nullable = false)
+    private long rangeEnd; //미포함
+
+    private int updatedRows;
+    private long elapsedMillis;
+    private LocalDateTime completedAt;
+
+    public BulkUpdateChunk(String jobId, int age, long rangeStart, long rangeEnd, int updatedRows, long elapsedMillis) {
+        this.jobId = jobId;
+        this.age = age;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.updatedRows = updatedRows;
+        this.elapsedMillis = elapsedMillis;
+        this.completedAt = LocalDateTime.now();
+    }
+
+    public long getRangeSize() {
+        return rangeEnd - rangeStart;
+    }
+}
@@ -4,6 +4,7 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.domain.Persistable;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
@@ -29,6 +30,9 @@ public class Item implements Persistable<String> {
     @CreatedDate
     private LocalDateTime createdDate;
 
+    @LastModifiedDate
+    private LocalDateTime lastModifiedDate;
+
     public Item(String id) {
         this.id = id;
     }
@@ -20,14 +20,14 @@ public class JpaBaseEntity {
     //ex) 엔티티의 필드 값을 자동으로 설정하거나, 필수 필드의 존재 여부를 확인하거나, 엔티티의 유효성을 검증하는 등의 작업을 수행할 수 있습니다.
     @PrePersist
     public void prePersist() {
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = AuditingScope.now(); //같은 flush(또는 10ms) 안에서는 같은 시각을 재사용
         this.createDate = now;
         this.updateDate = now;
     }
 
     @PreUpdate
     public void preUpdate() {
-        updateDate = LocalDateTime.now();
+        updateDate = AuditingScope.now();
     }
 
 
@@ -1,10 +1,15 @@
 package study.datajpa.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "member") //query cache 결과(id 목록)를 DB 조회 없이 채우기 위해 필요
+@Table(indexes = @Index(name = "idx_member_username_id", columnList = "username, member_id")) //keyset 페이징용
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
@@ -13,15 +18,22 @@ import javax.persistence.*;
         query= "select m from Member m where m.username = :username"
 )
 @NamedEntityGraph(name = "Member.all", attributeNodes = @NamedAttributeNode("team"))
+@EntityListeners(MemberChangeListener.class) //AuditingListener(BaseTimeEntity)에 더해서
 
 public class Member extends BaseEntity {
 
-    @Id @GeneratedValue
+    //allocationSize만큼 id를 미리 받아와 insert마다 시퀀스를 호출하지 않는다. (jdbc batch insert 가능)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq")
+    @SequenceGenerator(name = "member_seq", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
     private String username;
     private int age;
 
+    //낙관적 락, 변경 시 where version = ? 로 다른 트랜잭션의 수정 여부를 확인한다. (OptimisticLockRetry)
+    @Version
+    private Long version;
+
     /*
     JPA에서 지연로딩(Lazy Loading)은 객체를 조회할 때, 연관된 객체들을 즉시 모두 조회하지 않고, 해당 객체를 실제로 사용할 때 연관된 객체들을 조회하는 방식입니다.
     이를테면, 엔티티 A와 연관된 엔티티 B가 있다면, 엔티티 A를 조회할 때 엔티티 B는 실제로 사용될 때 조회되는 것입니다.
@@ -0,0 +1,81 @@
+package study.datajpa.entity;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * member 저장/수정/삭제를 MemberChangedEvent로 알린다. (near cache 무효화, UsernameIndex 반영용)
+ * 이벤트는 flush 시점에 나가므로 받는 쪽은 @TransactionalEventListener로 커밋 이후에 처리한다.
+ * bulk 저장/update를 하는 트랜잭션은 bulkChanged()로 표시해서 건별 이벤트 대신 MembersBulkChangedEvent 하나만 보낸다.
+ * 주입을 ObjectProvider로 받는 이유는 AuditingListener와 같다.
+ */
+public class MemberChangeListener {
+
+    private final ObjectProvider<ApplicationEventPublisher> eventPublisher;
+
+    public MemberChangeListener(ObjectProvider<ApplicationEventPublisher> eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 현재 트랜잭션을 bulk 변경으로 표시하고 MembersBulkChangedEvent를 한 번만 발행한다. (트랜잭션 밖이면 바로 발행)
+     * 표시된 트랜잭션에서는 건별 MemberChangedEvent를 발행하지 않는다. 커밋 후 받는 쪽이 DB에서 다시 읽는다.
+     */
+    public static void bulkChanged(ApplicationEventPublisher eventPublisher) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eventPublisher.publishEvent(new MembersBulkChangedEvent());
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(BulkMarker.class)) {
+            return; //이미 발행함
+        }
+        BulkMarker marker = new BulkMarker();
+        TransactionSynchronizationManager.bindResource(BulkMarker.class, marker);
+        TransactionSynchronizationManager.registerSynchronization(marker);
+        eventPublisher.publishEvent(new MembersBulkChangedEvent());
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void changed(Member member) {
+        if (!inBulk()) {
+            eventPublisher.getObject().publishEvent(new MemberChangedEvent(member.getId(), member.getUsername()));
+        }
+    }
+
+    @PostRemove
+    public void removed(Member member) {
+        if (!inBulk()) {
+            eventPublisher.getObject().publishEvent(new MemberChangedEvent(member.getId(), null));
+        }
+    }
+
+    private static boolean inBulk() {
+        return TransactionSynchronizationManager.hasResource(BulkMarker.class);
+    }
+
+    //트랜잭션이 끝나면 표시를 지운다. (REQUIRES_NEW로 중단된 동안은 새 트랜잭션에 보이지 않게)
+    private static final class BulkMarker implements TransactionSynchronization {
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(BulkMarker.class);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(BulkMarker.class, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(BulkMarker.class);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package study.datajpa.entity;
+
+import lombok.Getter;
+
+//member가 저장/수정/삭제됨 (MemberChangeListener가 flush 시점에 발행)
+@Getter
+public class MemberChangedEvent {
+
+    private final Long memberId;
+    private final String username; //삭제면 null
+
+    public MemberChangedEvent(Long memberId, String username) {
+        this.memberId = memberId;
+        this.username = username;
+    }
+
+    public boolean isRemoved() {
+        return username == null;
+    }
+}
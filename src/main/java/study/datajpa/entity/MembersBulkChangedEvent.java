@@ -0,0 +1,5 @@
+package study.datajpa.entity;
+
+//member가 bulk insert/update로 여러 건 바뀜 (트랜잭션마다 한 번, 건별 MemberChangedEvent는 없음)
+public class MembersBulkChangedEvent {
+}
@@ -4,23 +4,37 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.OptimisticLock;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team") //2차 캐시, 설정은 ehcache.xml
+@BatchSize(size = 100) //member.team 프록시 초기화 시 아직 로딩 안 된 team을 in 절로 최대 100개씩 함께 조회
 @Getter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team extends JpaBaseEntity {
-    @Id @GeneratedValue
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq")
+    @SequenceGenerator(name = "team_seq", sequenceName = "team_seq", allocationSize = 50)
     @Column(name = "team_id")
     private Long id;
     private String name;
 
+    @Version
+    private Long version;
+
     //JPA mappedBy는 두 개체 간의 양방향 관계에서 소유 측을 정의하는데 사용한다.
     //Member, Team중에서 외래키를 필요로 하는 곳은 Member이므로 Team에서 oneToMany에 mappedBy를 사용해 소유 측임을 선언한다.
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team.members")
+    @BatchSize(size = 100) //여러 team의 members 컬렉션을 한 번에 초기화
+    @OptimisticLock(excluded = true) //member 추가/이동은 team의 version을 올리지 않는다. (외래키는 member 쪽)
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
@@ -0,0 +1,88 @@
+package study.datajpa.monitoring;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+import study.datajpa.dto.CacheRegionStats;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 2차 캐시 region별 통계.
+ * hit/miss/put은 hibernate statistics, eviction은 ehcache가 JMX로 노출하는 JCache 통계에서 읽는다.
+ */
+@Component
+public class CacheStatisticsReader {
+
+    private final EntityManagerFactory emf;
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    //EntityManagerFactory를 백그라운드로 만들 때(fast-startup) 기동을 막지 않도록 조회 시점에 unwrap
+    public CacheStatisticsReader(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    public List<CacheRegionStats> read() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        //hibernate 목록에는 query cache region(member-count 등)이 빠져 있어 JCache 쪽 이름도 합친다.
+        Set<String> regionNames = new TreeSet<>(Arrays.asList(statistics.getSecondLevelCacheRegionNames()));
+        regionNames.addAll(jcacheNames());
+
+        List<CacheRegionStats> result = new ArrayList<>();
+        for (String regionName : regionNames) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            result.add(new CacheRegionStats(regionName,
+                    region.getHitCount(),
+                    region.getMissCount(),
+                    region.getPutCount(),
+                    evictions(regionName),
+                    region.getElementCountInMemory()));
+        }
+        return result;
+    }
+
+    private Set<String> jcacheNames() {
+        Set<String> names = new TreeSet<>();
+        try {
+            for (ObjectName name : mBeanServer.queryNames(new ObjectName("javax.cache:type=CacheStatistics,*"), null)) {
+                names.add(name.getKeyProperty("Cache"));
+            }
+        } catch (Exception e) {
+            //JMX를 쓸 수 없으면 hibernate 목록만 사용
+        }
+        return names;
+    }
+
+    //JCache 통계가 꺼져 있으면 -1
+    private long evictions(String regionName) {
+        try {
+            //JCache MBean 이름 규칙상 , : = 는 . 으로 바뀐다.
+            String cacheName = regionName.replaceAll("[,:=\\n]", ".");
+            Set<ObjectName> names = mBeanServer.queryNames(
+                    new ObjectName("javax.cache:type=CacheStatistics,CacheManager=*,Cache=" + cacheName), null);
+            if (names.isEmpty()) {
+                return -1;
+            }
+
+            long evictions = 0;
+            for (ObjectName name : names) {
+                evictions += (Long) mBeanServer.getAttribute(name, "CacheEvictions");
+            }
+            return evictions;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package study.datajpa.monitoring;
+
+import org.springframework.stereotype.Component;
+import study.datajpa.dto.LockContentionStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * operation 이름별 잠금 경합 지표.
+ * 비관적 락은 락을 얻기까지 기다린 시간, 낙관적 락은 충돌/재시도/대기 시간을 모은다.
+ */
+@Component
+public class LockMetrics {
+
+    private final ConcurrentMap<String, Counters> operations = new ConcurrentHashMap<>();
+
+    public void lockWait(String operation, long nanos) {
+        Counters counters = counters(operation);
+        counters.lockWaits.increment();
+        counters.lockWaitNanos.add(nanos);
+        counters.maxLockWaitNanos.accumulate(nanos);
+    }
+
+    public void conflict(String operation) {
+        counters(operation).conflicts.increment();
+    }
+
+    public void retry(String operation, long backoffNanos) {
+        Counters counters = counters(operation);
+        counters.retries.increment();
+        counters.backoffNanos.add(backoffNanos);
+    }
+
+    public void exhausted(String operation) {
+        counters(operation).exhausted.increment();
+    }
+
+    public List<LockContentionStats> read() {
+        List<LockContentionStats> result = new ArrayList<>();
+        for (Map.Entry<String, Counters> entry : operations.entrySet()) {
+            Counters counters = entry.getValue();
+            result.add(new LockContentionStats(entry.getKey(),
+                    counters.lockWaits.sum(),
+                    millis(counters.lockWaitNanos.sum()),
+                    millis(counters.maxLockWaitNanos.get()),
+                    counters.conflicts.sum(),
+                    counters.retries.sum(),
+                    millis(counters.backoffNanos.sum()),
+                    counters.exhausted.sum()));
+        }
+        result.sort((a, b) -> a.getOperation().compareTo(b.getOperation()));
+        return result;
+    }
+
+    private Counters counters(String operation) {
+        return operations.computeIfAbsent(operation, key -> new Counters());
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static class Counters {
+        final LongAdder lockWaits = new LongAdder();
+        final LongAdder lockWaitNanos = new LongAdder();
+        final LongAccumulator maxLockWaitNanos = new LongAccumulator(Math::max, 0);
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder backoffNanos = new LongAdder();
+        final LongAdder exhausted = new LongAdder();
+    }
+}
@@ -0,0 +1,239 @@
+package study.datajpa.monitoring;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.ReflectionUtils;
+import study.datajpa.dto.CursorPage;
+import study.datajpa.dto.RepositoryMethodStats;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 리포지토리 메소드별 지연시간(p50/p99/p999), 반환 row 수, 실행 SQL 수.
+ *
+ * spring data 리포지토리(파생 쿼리, @Query, 커스텀 구현 포함)와 @Repository 클래스 빈의 프록시 맨 앞에 interceptor를 붙인다.
+ * 트랜잭션 시작/커밋까지 포함한 호출자 기준 시간이다.
+ * 메소드별 카운터는 처음 호출될 때 한 번 만들고, 이후 호출은 map 조회와 카운터 증가만 하므로 할당이 없다.
+ */
+@Component
+public class RepositoryMetrics implements BeanPostProcessor {
+
+    private final ObjectProvider<SqlStatementCounter> sqlStatementCounterProvider;
+    private volatile SqlStatementCounter sqlStatementCounter; //BeanPostProcessor라 먼저 생성되므로 처음 쓸 때 가져온다.
+    private final List<RepositoryInterceptor> interceptors = new ArrayList<>();
+    private final ThreadLocal<Boolean> unrecorded = new ThreadLocal<>(); //runUnrecorded 실행 중이면 TRUE
+
+    public RepositoryMetrics(ObjectProvider<SqlStatementCounter> sqlStatementCounterProvider) {
+        this.sqlStatementCounterProvider = sqlStatementCounterProvider;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        String repository = repositoryName(bean);
+        if (repository == null) {
+            return bean;
+        }
+
+        RepositoryInterceptor interceptor = new RepositoryInterceptor(repository);
+        synchronized (interceptors) {
+            interceptors.add(interceptor);
+        }
+        if (bean instanceof Advised && !((Advised) bean).isFrozen()) {
+            ((Advised) bean).addAdvice(0, interceptor);
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(!(bean instanceof org.springframework.data.repository.Repository));
+        proxyFactory.addAdvice(interceptor);
+        return proxyFactory.getProxy();
+    }
+
+    //spring data 리포지토리는 사용자 인터페이스 이름, @Repository 클래스는 클래스 이름
+    private static String repositoryName(Object bean) {
+        if (bean instanceof org.springframework.data.repository.Repository && bean instanceof Advised) {
+            return Arrays.stream(((Advised) bean).getProxiedInterfaces())
+                    .filter(org.springframework.data.repository.Repository.class::isAssignableFrom)
+                    .filter(type -> !type.getName().startsWith("org.springframework."))
+                    .map(Class::getSimpleName)
+                    .findFirst().orElse(null);
+        }
+        Class<?> type = AopUtils.getTargetClass(bean);
+        if (!type.getName().startsWith("org.springframework.") && AnnotatedElementUtils.hasAnnotation(type, Repository.class)) {
+            return type.getSimpleName();
+        }
+        return null;
+    }
+
+    //이 스레드에서 work를 실행하는 동안의 리포지토리 호출은 기록하지 않는다. (QueryWarmUp)
+    public void runUnrecorded(Runnable work) {
+        unrecorded.set(Boolean.TRUE);
+        try {
+            work.run();
+        } finally {
+            unrecorded.remove();
+        }
+    }
+
+    public List<RepositoryMethodStats> read() {
+        return collect(false);
+    }
+
+    //지금까지의 값을 반환하고 0부터 다시 센다. (주기적으로 호출해 구간별 값을 얻는다)
+    public List<RepositoryMethodStats> readAndReset() {
+        return collect(true);
+    }
+
+    private List<RepositoryMethodStats> collect(boolean reset) {
+        List<RepositoryMethodStats> result = new ArrayList<>();
+        synchronized (interceptors) {
+            for (RepositoryInterceptor interceptor : interceptors) {
+                for (MethodMetrics metrics : interceptor.methods.values()) {
+                    RepositoryMethodStats stats = metrics.stats(interceptor.repository, reset);
+                    if (stats.getCalls() > 0) {
+                        result.add(stats);
+                    }
+                }
+            }
+        }
+        result.sort(Comparator.comparing(RepositoryMethodStats::getRepository).thenComparing(RepositoryMethodStats::getMethod));
+        return result;
+    }
+
+    private long executedStatements() {
+        SqlStatementCounter counter = sqlStatementCounter;
+        if (counter == null) {
+            counter = sqlStatementCounterProvider.getIfAvailable();
+            if (counter == null) {
+                return 0;
+            }
+            sqlStatementCounter = counter;
+        }
+        return counter.executedOnCurrentThread();
+    }
+
+    //반환 타입별 row 수, count/update 결과 같은 숫자는 row가 아니므로 0
+    static long rows(Object result) {
+        if (result == null || result instanceof Number || result instanceof Boolean) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof CursorPage) {
+            return ((CursorPage<?>) result).getContent().size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof Map || result instanceof Iterable || result instanceof AutoCloseable) {
+            return 0; //Stream 등 소비 전에는 알 수 없음
+        }
+        return 1;
+    }
+
+    private class RepositoryInterceptor implements MethodInterceptor {
+
+        private final String repository;
+        private final ConcurrentMap<Method, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+        RepositoryInterceptor(String repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Method method = invocation.getMethod();
+            if (ReflectionUtils.isObjectMethod(method) || unrecorded.get() != null) {
+                return invocation.proceed();
+            }
+            MethodMetrics metrics = methods.get(method);
+            if (metrics == null) {
+                metrics = methods.computeIfAbsent(method, MethodMetrics::new);
+            }
+
+            long statementsBefore = executedStatements();
+            long start = System.nanoTime();
+            boolean failed = true;
+            Object result = null;
+            try {
+                result = invocation.proceed();
+                failed = false;
+                return result;
+            } finally {
+                metrics.record(System.nanoTime() - start, failed, failed ? 0 : rows(result),
+                        executedStatements() - statementsBefore);
+            }
+        }
+    }
+
+    private static class MethodMetrics {
+
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder statements = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        MethodMetrics(Method method) {
+            //오버로딩(findAll(Pageable), findAll(Sort) ...) 구분
+            this.name = method.getName() + Arrays.stream(method.getParameterTypes())
+                    .map(Class::getSimpleName)
+                    .collect(Collectors.joining(", ", "(", ")"));
+        }
+
+        void record(long nanos, boolean failed, long rowCount, long statementCount) {
+            latency.record(nanos);
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+            rows.add(rowCount);
+            statements.add(statementCount);
+            maxNanos.accumulate(nanos);
+        }
+
+        RepositoryMethodStats stats(String repository, boolean reset) {
+            long[] snapshot = latency.snapshot(reset);
+            return new RepositoryMethodStats(repository, name,
+                    reset ? calls.sumThenReset() : calls.sum(),
+                    reset ? errors.sumThenReset() : errors.sum(),
+                    micros(LatencyHistogram.percentile(snapshot, 0.5)),
+                    micros(LatencyHistogram.percentile(snapshot, 0.99)),
+                    micros(LatencyHistogram.percentile(snapshot, 0.999)),
+                    micros(reset ? maxNanos.getThenReset() : maxNanos.get()),
+                    reset ? rows.sumThenReset() : rows.sum(),
+                    reset ? statements.sumThenReset() : statements.sum());
+        }
+
+        private static long micros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
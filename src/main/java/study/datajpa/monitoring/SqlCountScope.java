@@ -0,0 +1,69 @@
+package study.datajpa.monitoring;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link SqlStatementCounter#open(String)}부터 close까지 현재 스레드에서 실행된 SQL 집계.
+ * try-with-resources로 사용한다.
+ */
+public class SqlCountScope implements AutoCloseable {
+
+    private final String name;
+    private final SqlStatementCounter counter;
+    private final Map<String, Integer> shapes = new LinkedHashMap<>();
+    private int statementCount;
+
+    SqlCountScope(String name, SqlStatementCounter counter) {
+        this.name = name;
+        this.counter = counter;
+    }
+
+    void record(String shape) {
+        statementCount++;
+        shapes.merge(shape, 1, Integer::sum);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    //shape별 실행 횟수 (실행 순서)
+    public Map<String, Integer> getShapes() {
+        return Collections.unmodifiableMap(shapes);
+    }
+
+    //threshold번 이상 반복된 select shape
+    public Map<String, Integer> getNPlusOneSuspects() {
+        Map<String, Integer> suspects = new LinkedHashMap<>();
+        shapes.forEach((shape, count) -> {
+            if (count >= counter.getThreshold() && shape.regionMatches(true, 0, "select", 0, 6)) {
+                suspects.put(shape, count);
+            }
+        });
+        return suspects;
+    }
+
+    @Override
+    public void close() {
+        counter.close(this);
+    }
+
+    //본문이 failure로 끝났으면 close의 N+1 예외(FAIL)가 원래 예외를 가리지 않도록 suppressed로 붙인다.
+    public void closeAfter(Throwable failure) {
+        if (failure == null) {
+            close();
+            return;
+        }
+        try {
+            close();
+        } catch (IllegalStateException e) {
+            failure.addSuppressed(e);
+        }
+    }
+}
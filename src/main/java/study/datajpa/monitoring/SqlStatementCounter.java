@@ -0,0 +1,115 @@
+package study.datajpa.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * p6spy가 감싼 커넥션에서 실행된 SQL을 현재 스레드에 열린 {@link SqlCountScope}(HTTP 요청, 테스트)에 집계한다.
+ * 같은 모양(shape)의 select가 파라미터만 바뀌어 threshold번 이상 반복되면 N+1로 본다.
+ */
+@Slf4j
+@Component
+public class SqlStatementCounter extends SimpleJdbcEventListener {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'|\\b\\d+\\b");
+
+    //스코프가 열린 스레드만 값을 가진다. (중첩 스코프는 모두 집계)
+    private final ThreadLocal<Deque<SqlCountScope>> scopes = new ThreadLocal<>();
+
+    //스코프와 상관없이 스레드별 누적 실행 수, 전후 차이로 구간의 statement 수를 구한다. (RepositoryMetrics)
+    private final ThreadLocal<long[]> executed = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Value("${datajpa.sql-counter.n-plus-one-threshold:3}")
+    private int threshold;
+
+    //운영은 WARN(로그), 테스트는 FAIL(스코프 종료 시 예외)
+    @Value("${datajpa.sql-counter.n-plus-one-action:WARN}")
+    private NPlusOneAction action;
+
+    public SqlCountScope open(String name) {
+        Deque<SqlCountScope> active = scopes.get();
+        if (active == null) {
+            active = new ArrayDeque<>();
+            scopes.set(active);
+        }
+        SqlCountScope scope = new SqlCountScope(name, this);
+        active.push(scope);
+        return scope;
+    }
+
+    //현재 스레드에서 가장 안쪽에 열린 스코프 이름, 없으면 null (다른 스레드에서 같은 이름으로 다시 열 때)
+    public String currentScopeName() {
+        Deque<SqlCountScope> active = scopes.get();
+        return active != null ? active.peek().getName() : null;
+    }
+
+    void close(SqlCountScope scope) {
+        Deque<SqlCountScope> active = scopes.get();
+        if (active != null) {
+            active.remove(scope);
+            if (active.isEmpty()) {
+                scopes.remove();
+            }
+        }
+
+        Map<String, Integer> suspects = scope.getNPlusOneSuspects();
+        if (suspects.isEmpty()) {
+            log.debug("[{}] {} statements", scope.getName(), scope.getStatementCount());
+            return;
+        }
+        String message = "[" + scope.getName() + "] " + scope.getStatementCount() + " statements, N+1 suspected: " +
+                suspects.entrySet().stream()
+                        .map(e -> e.getValue() + "x " + e.getKey())
+                        .collect(Collectors.joining(", "));
+        if (action == NPlusOneAction.FAIL) {
+            throw new IllegalStateException(message);
+        }
+        log.warn(message);
+    }
+
+    public long executedOnCurrentThread() {
+        return executed.get()[0];
+    }
+
+    int getThreshold() {
+        return threshold;
+    }
+
+    //execute/executeQuery/executeUpdate/executeBatch 한 번 = DB 왕복 한 번
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        executed.get()[0]++;
+        Deque<SqlCountScope> active = scopes.get();
+        if (active == null) {
+            return;
+        }
+        String shape = shapeOf(statementInformation.getSql());
+        for (SqlCountScope scope : active) {
+            scope.record(shape);
+        }
+    }
+
+    //PreparedStatement는 이미 ? 이므로 공백만 정리, 일반 Statement는 리터럴도 ?로 바꾼다.
+    static String shapeOf(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String shape = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        return LITERAL.matcher(shape).replaceAll("?");
+    }
+
+    public enum NPlusOneAction {
+        WARN, FAIL
+    }
+}
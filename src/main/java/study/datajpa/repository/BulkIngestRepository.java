@@ -0,0 +1,101 @@
+package study.datajpa.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.IngestResult;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberChangeListener;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 대량 저장용 리포지토리.
+ * save()를 반복하면 건마다 merge 여부 판단 + insert 한 번씩 나가지만,
+ * 여기서는 chunk 단위로 persist -> flush(jdbc batch insert) -> clear 해서 영속성 컨텍스트가 커지지 않게 한다.
+ * member는 건별 MemberChangedEvent 대신 커밋 후 MembersBulkChangedEvent 하나만 보낸다. (이벤트가 커밋까지 메모리에 쌓이지 않게)
+ */
+@Slf4j
+@Repository
+public class BulkIngestRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    //기본 chunk 크기는 hibernate jdbc batch 크기와 맞춘다.
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}")
+    private int defaultChunkSize;
+
+    public BulkIngestRepository(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Transactional
+    public IngestResult saveTeams(Collection<Team> teams) {
+        return saveTeams(teams.stream(), defaultChunkSize);
+    }
+
+    @Transactional
+    public IngestResult saveTeams(Stream<Team> teams, int chunkSize) {
+        return ingest(teams, chunkSize, em::persist);
+    }
+
+    @Transactional
+    public IngestResult saveMembers(Collection<Member> members) {
+        return saveMembers(members.stream(), defaultChunkSize);
+    }
+
+    //아직 저장되지 않은 team은 member보다 먼저 persist 해서 team_id 외래키가 채워지도록 한다.
+    @Transactional
+    public IngestResult saveMembers(Stream<Member> members, int chunkSize) {
+        MemberChangeListener.bulkChanged(eventPublisher);
+        return ingest(members, chunkSize, member -> {
+            Team team = member.getTeam();
+            if (team != null && team.getId() == null) {
+                em.persist(team);
+            }
+            em.persist(member);
+        });
+    }
+
+    private <T> IngestResult ingest(Stream<T> rows, int chunkSize, Consumer<T> persister) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize는 0보다 커야 합니다: " + chunkSize);
+        }
+
+        long start = System.nanoTime();
+        long count = 0;
+
+        //대량 저장한 엔티티로 2차 캐시를 채우지 않는다.
+        //캐시 저장은 커밋 시점에 판단하므로 트랜잭션이 끝날 때까지 유지한다.
+        em.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+
+        try (rows) {
+            for (T row : (Iterable<T>) rows::iterator) {
+                persister.accept(row);
+                if (++count % chunkSize == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+        }
+        em.flush();
+        em.clear();
+
+        IngestResult result = new IngestResult(count, System.nanoTime() - start);
+        log.info("bulk ingest {} rows in {} ms ({} rows/sec)",
+                result.getRows(), result.getElapsedMillis(), String.format("%.0f", result.getRowsPerSecond()));
+        return result;
+    }
+}
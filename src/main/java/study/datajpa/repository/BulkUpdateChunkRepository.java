@@ -0,0 +1,11 @@
+package study.datajpa.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import study.datajpa.entity.BulkUpdateChunk;
+
+import java.util.List;
+
+public interface BulkUpdateChunkRepository extends JpaRepository<BulkUpdateChunk, Long> {
+
+    List<BulkUpdateChunk> findByJobId(String jobId);
+}
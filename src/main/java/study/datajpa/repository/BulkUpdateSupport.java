@@ -0,0 +1,89 @@
+package study.datajpa.repository;
+
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.context.ApplicationEventPublisher;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberChangeListener;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * bulk JPQL update는 영속성 컨텍스트를 거치지 않으므로 이미 로딩된 엔티티는 DB와 값이 달라진다.
+ * em.clear()로 전부 비우는 대신, update 대상이 되는 엔티티만 골라 detach 한다.
+ * 로딩된 컬렉션(ex. team.getMembers())이 그 엔티티를 들고 있으면 컬렉션 주인을 refresh 해서 다시 로딩되게 한다.
+ */
+final class BulkUpdateSupport {
+
+    private BulkUpdateSupport() {
+    }
+
+    /**
+     * 쓰기 지연된 변경을 flush 한 뒤 affected에 해당하는 managed 엔티티를 모아 update를 실행하고, 모아둔 엔티티만 detach 한다.
+     * flush 후에는 메모리 값과 DB 값이 같으므로 update 조건을 affected로 그대로 옮기면 된다.
+     * member면 엔티티 이벤트가 없으므로 커밋 후 MembersBulkChangedEvent를 보낸다.
+     */
+    static <T> int executeAndEvict(EntityManager em, ApplicationEventPublisher eventPublisher, Class<T> type,
+                                   Predicate<? super T> affected, BulkUpdate update) {
+        em.flush();
+        if (Member.class.isAssignableFrom(type)) {
+            MemberChangeListener.bulkChanged(eventPublisher);
+        }
+        List<T> stale = managed(em, type, affected);
+
+        Set<Object> owners = collectionOwners(em, stale);
+
+        int updated = update.execute();
+        stale.forEach(em::detach); //다시 조회하면 update된 값으로 로딩된다.
+        owners.forEach(em::refresh); //컬렉션이 초기화 전 상태로 바뀌어 다음 접근 때 새로 로딩된다. (flush 했으므로 잃는 변경 없음)
+        return updated;
+    }
+
+    //초기화된 컬렉션 중 stale 엔티티를 담고 있는 컬렉션의 주인
+    private static Set<Object> collectionOwners(EntityManager em, List<?> stale) {
+        Set<Object> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (stale.isEmpty()) {
+            return owners;
+        }
+        Set<Object> staleSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        staleSet.addAll(stale);
+        em.unwrap(SessionImplementor.class).getPersistenceContext().forEachCollectionEntry((collection, entry) -> {
+            if (!collection.wasInitialized() || !(collection instanceof Collection) || collection.getOwner() == null) {
+                return;
+            }
+            for (Object element : (Collection<?>) collection) {
+                if (staleSet.contains(element)) {
+                    owners.add(collection.getOwner());
+                    return;
+                }
+            }
+        }, false);
+        owners.removeAll(staleSet); //자기 자신은 detach 된다.
+        return owners;
+    }
+
+    private static <T> List<T> managed(EntityManager em, Class<T> type, Predicate<? super T> affected) {
+        List<T> result = new ArrayList<>();
+        for (Map.Entry<Object, EntityEntry> entry : em.unwrap(SessionImplementor.class)
+                .getPersistenceContext().reentrantSafeEntityEntries()) {
+            Object entity = entry.getKey();
+            if (type.isInstance(entity) && affected.test(type.cast(entity))) {
+                result.add(type.cast(entity));
+            }
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    interface BulkUpdate {
+        int execute();
+    }
+}
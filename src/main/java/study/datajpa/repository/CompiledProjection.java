@@ -0,0 +1,318 @@
+package study.datajpa.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.util.ClassUtils;
+
+import java.beans.Introspector;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 인터페이스 projection 메타데이터를 타입별로 한 번만 만들어 재사용한다.
+ * Spring Data의 projection은 row마다 프록시(ProxyFactory + advice)를 만들고 getter 호출마다 SpEL을 해석한다.
+ * 여기서는 getter마다 SpEL(@Value가 없으면 target.프로퍼티)을 컴파일 모드로 한 번 파싱해 두고,
+ * row마다 JDK 프록시 + 핸들러 + 값 배열만 만든다. (row당 객체 생성 자체는 남는다)
+ * Spring Data처럼 getter 값은 처음 호출될 때 계산해서 배열에 담으므로, 호출하지 않은 연관 엔티티는 초기화하지 않는다.
+ *
+ * @Value에서는 target만 쓸 수 있다. (args, 빈 참조는 지원하지 않음)
+ * default 메서드는 인터페이스의 구현을 그대로 호출한다.
+ */
+final class CompiledProjection<T> {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, CompiledProjection.class.getClassLoader()));
+    private static final EvaluationContext CONTEXT = new StandardEvaluationContext();
+    private static final Map<Class<?>, CompiledProjection<?>> CACHE = new ConcurrentHashMap<>();
+    private static final Object NOT_LOADED = new Object();
+
+    private final Class<T> type;
+    private final Method[] getters;
+    private final Map<Method, MethodHandle> defaultMethods = new ConcurrentHashMap<>();
+    private final Expression[] expressions;
+    private final CompiledProjection<?>[] nested; //getter 반환 타입이 projection 인터페이스이면 그 메타데이터
+    private final boolean closed; //@Value가 없는 인터페이스 트리 -> 필요한 컬럼만 select 가능
+    private final int columnCount;
+    private final byte[] compileResults; //0: 아직 안 함, 1: 성공, -1: 실패(해석 모드), 경쟁하면 한 번 더 시도할 뿐
+
+    private CompiledProjection(Class<T> type) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException("인터페이스 projection만 지원합니다: " + type.getName());
+        }
+        List<Method> accessors = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (method.isDefault()) {
+                defaultMethods.put(method, defaultMethod(method));
+            } else if (method.getParameterCount() == 0 && method.getReturnType() != void.class) {
+                accessors.add(method);
+            }
+        }
+        this.type = type;
+        this.getters = accessors.toArray(new Method[0]);
+        this.expressions = new Expression[getters.length];
+        this.nested = new CompiledProjection<?>[getters.length];
+        this.compileResults = new byte[getters.length];
+        boolean closedTree = true;
+        int columns = 0;
+        for (int i = 0; i < getters.length; i++) {
+            Value value = getters[i].getAnnotation(Value.class);
+            String expression = value != null ? stripDelimiters(value.value()) : "target." + propertyName(getters[i]);
+            expressions[i] = PARSER.parseExpression(expression);
+            if (value == null && isProjection(getters[i].getReturnType())) {
+                nested[i] = of(getters[i].getReturnType());
+                closedTree &= nested[i].closed;
+                columns += 1 + nested[i].columnCount; //join 대상 id + 중첩 컬럼
+            } else {
+                closedTree &= value == null && !Iterable.class.isAssignableFrom(getters[i].getReturnType());
+                columns++;
+            }
+        }
+        this.closed = closedTree;
+        this.columnCount = columns;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> CompiledProjection<T> of(Class<T> type) {
+        //computeIfAbsent 안에서 중첩 타입을 다시 등록하면 안 되므로 get/putIfAbsent로 나눈다.
+        CompiledProjection<?> projection = CACHE.get(type);
+        if (projection == null) {
+            projection = new CompiledProjection<>(type);
+            CompiledProjection<?> previous = CACHE.putIfAbsent(type, projection);
+            if (previous != null) {
+                projection = previous;
+            }
+        }
+        return (CompiledProjection<T>) projection;
+    }
+
+    //target(엔티티)을 감싼 projection을 만든다. getter 값은 호출될 때 계산한다.
+    T project(Object target) {
+        Object[] values = new Object[getters.length];
+        Arrays.fill(values, NOT_LOADED);
+        return newInstance(new Values(new Root(target), values));
+    }
+
+    private Object evaluate(int i, Root root) {
+        Object value;
+        if (nested[i] != null) {
+            Object target = expressions[i].getValue(CONTEXT, root);
+            value = target != null ? nested[i].project(target) : null;
+        } else {
+            value = expressions[i].getValue(CONTEXT, root, getters[i].getReturnType());
+        }
+        if (compileResults[i] == 0) {
+            compile(i);
+        }
+        return value;
+    }
+
+    //SpEL은 한 번 해석 실행해서 타입 정보가 모인 뒤에야 바이트코드로 컴파일할 수 있다. (실패하면 해석 모드로 계속 동작)
+    private void compile(int i) {
+        compileResults[i] = (byte) (((SpelExpression) expressions[i]).compileExpression() ? 1 : -1);
+    }
+
+    //지금까지 호출된 getter의 SpEL이 모두 컴파일됐는지
+    boolean isAllCompiled() {
+        for (byte result : compileResults) {
+            if (result != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * closed projection이 읽는 컬럼만 select 하는 JPQL. 중첩 projection은 left join으로 펼친다.
+     * join 대상이 있는지는 중첩 컬럼 앞에 넣은 id 컬럼으로 판단한다. (중첩 컬럼 값이 모두 null일 수도 있으므로)
+     * ex) NestedClosedProjections -> select m.username, j1.id, j1.name from Member m left join m.team j1
+     */
+    String selectFrom(String entityName, String alias) {
+        if (!closed) {
+            throw new IllegalStateException("closed projection이 아닙니다: " + type.getName());
+        }
+        List<String> columns = new ArrayList<>();
+        StringBuilder joins = new StringBuilder();
+        appendColumns(alias, columns, joins, new int[]{0});
+        return "select " + String.join(", ", columns) + " from " + entityName + " " + alias + joins;
+    }
+
+    private void appendColumns(String alias, List<String> columns, StringBuilder joins, int[] joinSeq) {
+        for (int i = 0; i < getters.length; i++) {
+            String property = propertyName(getters[i]);
+            if (nested[i] != null) {
+                String joinAlias = "j" + (++joinSeq[0]);
+                joins.append(" left join ").append(alias).append('.').append(property).append(' ').append(joinAlias);
+                columns.add(joinAlias + ".id");
+                nested[i].appendColumns(joinAlias, columns, joins, joinSeq);
+            } else {
+                columns.add(alias + '.' + property);
+            }
+        }
+    }
+
+    //selectFrom 쿼리의 row(컬럼 순서 동일)를 인터페이스 트리로 매핑한다. 엔티티는 만들지 않는다.
+    T fromTuple(Object[] row) {
+        return fromTuple(row, 0);
+    }
+
+    private T fromTuple(Object[] row, int offset) {
+        Object[] values = new Object[getters.length];
+        for (int i = 0; i < getters.length; i++) {
+            if (nested[i] != null) {
+                //left join 대상이 없으면(member.team == null) 중첩 projection도 null
+                values[i] = row[offset] != null ? nested[i].fromTuple(row, offset + 1) : null;
+                offset += 1 + nested[i].columnCount;
+            } else {
+                values[i] = convert(row[offset++], getters[i].getReturnType());
+            }
+        }
+        return newInstance(new Values(null, values));
+    }
+
+    private static Object convert(Object value, Class<?> targetType) {
+        if (value == null || ClassUtils.isAssignableValue(targetType, value)) {
+            return value;
+        }
+        return DefaultConversionService.getSharedInstance().convert(value, targetType);
+    }
+
+    private T newInstance(Values values) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, values));
+    }
+
+    Class<T> getType() {
+        return type;
+    }
+
+    //프록시에는 구현이 없으므로 인터페이스의 default 구현을 invokespecial로 호출하는 핸들을 만든다.
+    private static MethodHandle defaultMethod(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        try {
+            return MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup())
+                    .unreflectSpecial(method, declaringClass);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("default 메서드를 호출할 수 없습니다: " + method, e);
+        }
+    }
+
+    private static boolean isProjection(Class<?> type) {
+        return type.isInterface() && !type.getName().startsWith("java.");
+    }
+
+    private static String stripDelimiters(String expression) {
+        if (expression.startsWith("#{") && expression.endsWith("}")) {
+            return expression.substring(2, expression.length() - 1);
+        }
+        return expression;
+    }
+
+    static String propertyName(Method getter) {
+        String name = getter.getName();
+        if (name.startsWith("get") && name.length() > 3) {
+            return Introspector.decapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2) {
+            return Introspector.decapitalize(name.substring(2));
+        }
+        return name;
+    }
+
+    //SpEL 루트. @Value("#{target.xxx}")의 target
+    public static final class Root {
+
+        private final Object target;
+
+        Root(Object target) {
+            this.target = target;
+        }
+
+        public Object getTarget() {
+            return target;
+        }
+    }
+
+    //root가 null이면 values가 모두 채워져 있다. (fromTuple)
+    private final class Values implements InvocationHandler {
+
+        private final Root root;
+        private final Object[] values;
+
+        Values(Root root, Object[] values) {
+            this.root = root;
+            this.values = values;
+        }
+
+        Object value(int i) {
+            Object value = values[i];
+            if (value == NOT_LOADED) {
+                value = evaluate(i, root);
+                values[i] = value;
+            }
+            return value;
+        }
+
+        //equals/hashCode/toString은 모든 값이 필요하다.
+        Object[] loadAll() {
+            for (int i = 0; i < values.length; i++) {
+                value(i);
+            }
+            return values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            for (int i = 0; i < getters.length; i++) {
+                if (getters[i].equals(method)) {
+                    return value(i);
+                }
+            }
+            MethodHandle defaultMethod = defaultMethods.get(method);
+            if (defaultMethod != null) {
+                return defaultMethod.bindTo(proxy).invokeWithArguments(args != null ? args : new Object[0]);
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0] || (args[0] != null && Proxy.isProxyClass(args[0].getClass())
+                            && Proxy.getInvocationHandler(args[0]) instanceof CompiledProjection.Values
+                            && sameValues((CompiledProjection<?>.Values) Proxy.getInvocationHandler(args[0])));
+                case "hashCode":
+                    return Arrays.hashCode(loadAll());
+                case "toString":
+                    StringBuilder sb = new StringBuilder(type.getSimpleName()).append('{');
+                    for (int i = 0; i < getters.length; i++) {
+                        sb.append(i > 0 ? ", " : "").append(propertyName(getters[i])).append('=').append(value(i));
+                    }
+                    return sb.append('}').toString();
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }
+
+        private boolean sameValues(CompiledProjection<?>.Values other) {
+            return type == other.getType() && Arrays.equals(loadAll(), other.loadAll());
+        }
+
+        private Class<T> getType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package study.datajpa.repository;
+
+/**
+ * 페이징 조회 시 totalCount를 구하는 방법.
+ * count가 아예 필요 없으면 Slice를 반환하는 메서드를 사용한다.
+ */
+public enum CountStrategy {
+
+    //매번 count 쿼리 실행
+    EXACT,
+
+    //count 결과를 query cache(member-count region, TTL 30초)에 저장, member 테이블이 변경되면 hibernate가 무효화
+    CACHED,
+
+    //DB 통계의 추정치 사용 (H2, PostgreSQL), 그 외 DB는 EXACT와 동일
+    ESTIMATED
+}
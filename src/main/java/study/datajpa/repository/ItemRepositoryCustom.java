@@ -0,0 +1,11 @@
+package study.datajpa.repository;
+
+import study.datajpa.dto.UpsertResult;
+
+import java.util.Collection;
+
+public interface ItemRepositoryCustom {
+
+    //id가 없으면 insert, 있으면 lastModifiedDate만 갱신 (엔티티 조회/merge 없이 native 한 방)
+    UpsertResult upsertAll(Collection<String> ids);
+}
@@ -0,0 +1,114 @@
+package study.datajpa.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.UpsertResult;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * save()는 Persistable.isNew()가 false면 merge -> select 후 insert/update 하므로
+ * 대량 적재 시 건마다 select가 나간다. 여기서는 chunk마다 MERGE(H2) / INSERT ... ON CONFLICT(PostgreSQL)
+ * 한 문장으로 처리하고, 엔티티는 만들지 않는다.
+ */
+@RequiredArgsConstructor
+public class ItemRepositoryImpl implements ItemRepositoryCustom {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final EntityManager em;
+
+    @Override
+    @Transactional
+    public UpsertResult upsertAll(Collection<String> ids) {
+        //같은 id가 한 문장에 두 번 들어가면 MERGE가 실패하므로 중복 제거
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        em.flush(); //아직 insert 안 된 Item이 있으면 먼저 반영
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            boolean postgres = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+            UpsertResult result = new UpsertResult(0, 0);
+            for (int from = 0; from < distinctIds.size(); from += CHUNK_SIZE) {
+                List<String> chunk = distinctIds.subList(from, Math.min(from + CHUNK_SIZE, distinctIds.size()));
+                result = result.plus(postgres ? upsertPostgres(connection, chunk, now) : mergeH2(connection, chunk, now));
+            }
+            return result;
+        });
+    }
+
+    //MERGE로 갱신되기 전 row(OLD TABLE) 수 = updated
+    private UpsertResult mergeH2(Connection connection, List<String> ids, Timestamp now) throws SQLException {
+        String sql = "select count(*) from old table (" +
+                "merge into item t using (values " + placeholders("(?)", ids.size()) + ") s(id) on t.id = s.id" +
+                " when matched then update set last_modified_date = ?" +
+                " when not matched then insert (id, created_date, last_modified_date) values (s.id, ?, ?))";
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                ps.setString(index++, id);
+            }
+            ps.setTimestamp(index++, now);
+            ps.setTimestamp(index++, now);
+            ps.setTimestamp(index, now);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                long updated = rs.getLong(1);
+                return new UpsertResult(ids.size() - updated, updated);
+            }
+        }
+    }
+
+    //xmax = 0 이면 이번 문장에서 insert 된 row
+    private UpsertResult upsertPostgres(Connection connection, List<String> ids, Timestamp now) throws SQLException {
+        String sql = "insert into item (id, created_date, last_modified_date) values " + placeholders("(?, ?, ?)", ids.size()) +
+                " on conflict (id) do update set last_modified_date = excluded.last_modified_date" +
+                " returning (xmax = 0)";
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                ps.setString(index++, id);
+                ps.setTimestamp(index++, now);
+                ps.setTimestamp(index++, now);
+            }
+
+            long inserted = 0;
+            long updated = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getBoolean(1)) {
+                        inserted++;
+                    } else {
+                        updated++;
+                    }
+                }
+            }
+            return new UpsertResult(inserted, updated);
+        }
+    }
+
+    private static String placeholders(String row, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(row);
+        }
+        return sb.toString();
+    }
+}
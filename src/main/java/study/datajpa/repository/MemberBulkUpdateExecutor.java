@@ -0,0 +1,161 @@
+package study.datajpa.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.BulkUpdateReport;
+import study.datajpa.dto.BulkUpdateReport.ChunkTiming;
+import study.datajpa.entity.BulkUpdateChunk;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * bulkAgePlus를 id 구간별 짧은 트랜잭션으로 나눠 병렬 실행한다.
+ * 한 문장으로 전체를 update 하면 락을 오래 잡고 코어 하나만 쓰기 때문.
+ *
+ * 구간은 rangeSize 배수로 고정되고, 구간 update와 완료 기록(BulkUpdateChunk)은 같은 트랜잭션에서 커밋된다.
+ * 그래서 실패 후 같은 jobId로 다시 실행하면 남은 구간만 처리되고, 이미 반영된 구간은 두 번 더해지지 않는다.
+ * 호출한 쪽에 트랜잭션이 있어도 구간마다 별도 트랜잭션(REQUIRES_NEW)으로 커밋한다.
+ */
+@Slf4j
+@Component
+public class MemberBulkUpdateExecutor {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final BulkUpdateChunkRepository chunkRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${datajpa.bulk-update.range-size:10000}")
+    private int defaultRangeSize;
+
+    //커넥션 풀보다 작게 잡는다.
+    @Value("${datajpa.bulk-update.threads:4}")
+    private int threads;
+
+    public MemberBulkUpdateExecutor(BulkUpdateChunkRepository chunkRepository, PlatformTransactionManager transactionManager) {
+        this.chunkRepository = chunkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        //큐가 차면 호출 스레드에서도 구간을 실행(CallerRunsPolicy)하는데, 호출한 쪽 트랜잭션에 참여하면
+        //그 구간과 완료 기록이 바깥 트랜잭션과 함께 롤백/커밋되어 구간 단위 커밋이 깨진다.
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public BulkUpdateReport bulkAgePlus(String jobId, int age) {
+        return bulkAgePlus(jobId, age, defaultRangeSize);
+    }
+
+    public BulkUpdateReport bulkAgePlus(String jobId, int age, int rangeSize) {
+        if (rangeSize <= 0) {
+            throw new IllegalArgumentException("rangeSize는 0보다 커야 합니다: " + rangeSize);
+        }
+        long start = System.nanoTime();
+
+        Set<Long> completed = completedRanges(jobId, age, rangeSize);
+        Object[] minMax = transactionTemplate.execute(status -> em.createQuery(
+                        "select min(m.id), max(m.id) from Member m where m.age >= :age", Object[].class)
+                .setParameter("age", age)
+                .getSingleResult());
+        if (minMax == null || minMax[0] == null) {
+            return new BulkUpdateReport(jobId, 0, 0, 0, 0, 0, Collections.emptyList(), Collections.emptyList());
+        }
+
+        List<Long> pending = new ArrayList<>();
+        int total = 0;
+        for (long from = Math.floorDiv((Long) minMax[0], rangeSize) * rangeSize; from <= (Long) minMax[1]; from += rangeSize) {
+            total++;
+            if (!completed.contains(from)) {
+                pending.add(from);
+            }
+        }
+        int skipped = total - pending.size();
+        log.info("[{}] bulkAgePlus(age >= {}) ranges total={}, skipped={}, pending={}", jobId, age, total, skipped, pending.size());
+
+        //작업 큐도 제한해서 구간이 아무리 많아도 Future만 쌓이도록 한다.
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+        AtomicInteger done = new AtomicInteger();
+        List<Future<ChunkTiming>> futures = new ArrayList<>();
+        try {
+            for (Long from : pending) {
+                futures.add(executor.submit(() -> {
+                    ChunkTiming chunk = updateRange(jobId, age, from, from + rangeSize);
+                    log.info("[{}] range [{}, {}) updated {} rows in {} ms ({}/{})", jobId, chunk.getRangeStart(),
+                            chunk.getRangeEnd(), chunk.getUpdatedRows(), chunk.getElapsedMillis(), done.incrementAndGet(), pending.size());
+                    return chunk;
+                }));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<ChunkTiming> chunks = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        long updated = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                ChunkTiming chunk = futures.get(i).get();
+                chunks.add(chunk);
+                updated += chunk.getUpdatedRows();
+            } catch (ExecutionException e) {
+                long from = pending.get(i);
+                log.warn("[{}] range [{}, {}) failed", jobId, from, from + rangeSize, e.getCause());
+                failures.add("[" + from + ", " + (from + rangeSize) + "): " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.add("interrupted");
+                break;
+            }
+        }
+
+        return new BulkUpdateReport(jobId, total, chunks.size(), skipped, updated,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), chunks, failures);
+    }
+
+    //구간 update + 완료 기록을 한 트랜잭션으로
+    private ChunkTiming updateRange(String jobId, int age, long from, long to) {
+        return transactionTemplate.execute(status -> {
+            long chunkStart = System.nanoTime();
+            int updated = em.createQuery("update versioned Member m set m.age = m.age + 1" +
+                            " where m.age >= :age and m.id >= :from and m.id < :to")
+                    .setParameter("age", age)
+                    .setParameter("from", from)
+                    .setParameter("to", to)
+                    .executeUpdate();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunkStart);
+
+            //같은 job이 동시에 실행돼도 (job_id, range_start) unique 제약에 걸려 한쪽은 롤백된다.
+            chunkRepository.save(new BulkUpdateChunk(jobId, age, from, to, updated, elapsed));
+            return new ChunkTiming(from, to, updated, elapsed);
+        });
+    }
+
+    //같은 jobId를 다른 age나 rangeSize로 이어서 실행하면 대상이나 구간 경계가 달라져 빠지거나 중복 반영되므로 막는다.
+    private Set<Long> completedRanges(String jobId, int age, int rangeSize) {
+        Set<Long> completed = new HashSet<>();
+        for (BulkUpdateChunk chunk : chunkRepository.findByJobId(jobId)) {
+            if (chunk.getAge() != age || chunk.getRangeSize() != rangeSize) {
+                throw new IllegalStateException("job " + jobId + "은 age " + chunk.getAge() + ", rangeSize " +
+                        chunk.getRangeSize() + "로 실행된 기록이 있습니다.");
+            }
+            completed.add(chunk.getRangeStart());
+        }
+        return completed;
+    }
+}
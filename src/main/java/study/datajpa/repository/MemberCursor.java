@@ -0,0 +1,66 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * (username, id) 기반 keyset 페이징 커서.
+ * 클라이언트에는 Base64 문자열로만 노출되므로 내부 포맷은 언제든 바꿀 수 있다.
+ * username이 null이면 마지막 구분자까지 생략해서 "null"이라는 username과 구분한다.
+ */
+@Getter
+public class MemberCursor {
+
+    private static final String NEXT = "n";
+    private static final String PREV = "p";
+
+    private final String username;
+    private final Long id;
+    private final boolean forward;
+
+    private MemberCursor(String username, Long id, boolean forward) {
+        this.username = username;
+        this.id = id;
+        this.forward = forward;
+    }
+
+    public static MemberCursor next(String username, Long id) {
+        return new MemberCursor(username, id, true);
+    }
+
+    public static MemberCursor prev(String username, Long id) {
+        return new MemberCursor(username, id, false);
+    }
+
+    public String encode() {
+        String raw = (forward ? NEXT : PREV) + ":" + id + (username != null ? ":" + username : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //빈 문자열이면 첫 페이지(null)
+    public static MemberCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다: " + cursor, e);
+        }
+
+        String[] parts = raw.split(":", 3);
+        if (parts.length < 2 || !(NEXT.equals(parts[0]) || PREV.equals(parts[0]))) {
+            throw new IllegalArgumentException("잘못된 커서입니다: " + cursor);
+        }
+
+        try {
+            return new MemberCursor(parts.length == 3 ? parts[2] : null, Long.valueOf(parts[1]), NEXT.equals(parts[0]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다: " + cursor, e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package study.datajpa.repository;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -16,6 +17,12 @@ public class MemberJpaRepository {
     @PersistenceContext
     private EntityManager em;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    public MemberJpaRepository(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
     public Member save(Member member) {
         em.persist(member);
         return member;
@@ -71,9 +78,10 @@ public class MemberJpaRepository {
 
     //ctrl + alt + n 소스 함축해줌
     public int bulkAgePlus(int age) {
-        return em.createQuery("update Member m set m.age = m.age + 1 where m.age >= :age")
-                .setParameter("age", age)
-                .executeUpdate();
+        return BulkUpdateSupport.executeAndEvict(em, eventPublisher, Member.class, m -> m.getAge() >= age, () ->
+                em.createQuery("update versioned Member m set m.age = m.age + 1 where m.age >= :age")
+                        .setParameter("age", age)
+                        .executeUpdate());
     }
 
 }
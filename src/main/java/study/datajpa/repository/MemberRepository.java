@@ -3,8 +3,11 @@ package study.datajpa.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.entity.Member;
 
@@ -18,14 +21,28 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     List<Member> findByUsernameAndAgeGreaterThan(String username, int age);
 
     //    @Query(name = "Member.findByUsername")
+    //query cache: 메서드(쿼리)+파라미터 단위로 결과 캐시, member 테이블 변경 시 자동 무효화
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "member-query")
+    })
     List<Member> findByUsername(@Param("username") String username);
 
     @Query("select m from Member m where m.username = :username and m.age = :age")
     List<Member> findUser(@Param("username") String username, @Param("age") int age);
 
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "member-query")
+    })
     @Query("select m.username from Member m")
     List<String> findUsernameList();
 
+    //member, team 둘 중 하나라도 변경되면 무효화
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "member-query")
+    })
     @Query("select new study.datajpa.dto.MemberDto(m.id, m.username, t.name) from Member m join m.team t")
     List<MemberDto> findMemberDto();
 
@@ -36,15 +53,23 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     Member findMemberByUsername(String username); //단건
     Optional<Member> findOptionalByUsername(String username); //단건 Optional
 
+    //엔티티 대신 username 컬럼만 (MemberUsernameCache)
+    @Query("select m.username from Member m where m.id = :id")
+    Optional<String> findUsernameById(@Param("id") Long id);
+
     //totalCount 쿼리를 분리할 수 있다.
     @Query(value = "select m from Member m left join m.team t", countQuery = "select count(m) from Member m")
     Page<Member> findByAge(int age, Pageable pageable);
 
-    //JPA에게 데이터베이스를 수정하는 메소드임을 나타내는 어노테이션
-    //사용하지 않으면 select 쿼리가 날라감
-    @Modifying(clearAutomatically = true) //쿼리 실행 후 자동으로 em.clear() 자동으로 영속성 컨텍스트가 클리어가 된다.
-    @Query("update Member m set m.age = m.age + 1 where m.age >= :age")
-    int bulkAgePlus(@Param("age") int age);
+    //count 쿼리 없이 size + 1건만 조회
+    @Query("select m from Member m left join m.team t")
+    Slice<Member> findSliceByAge(int age, Pageable pageable);
+
+    //count 방식을 쿼리마다 고를 수 있다. 마지막 페이지처럼 content로 total을 알 수 있으면 count를 생략한다.
+    default Page<Member> findByAge(int age, Pageable pageable, CountStrategy countStrategy) {
+        Slice<Member> slice = findSliceByAge(age, pageable);
+        return PageableExecutionUtils.getPage(slice.getContent(), pageable, () -> countMembers(countStrategy));
+    }
 
 
     @Query("select m from Member m left join fetch m.team")
@@ -66,6 +91,8 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @EntityGraph("Member.all")
     List<Member> findEntityGraphByUsername(@Param("username") String username);
 
+    //읽기 전용 트랜잭션 -> 라우팅을 켜면 replica에서 조회 (이미 쓰기 트랜잭션 안이면 그대로 primary)
+    @Transactional(readOnly = true)
     @QueryHints(
             value = @QueryHint(name = "org.hibernate.readOnly", value = "true")
     )
@@ -87,4 +114,26 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
             countQuery = "select count(*) from member",
             nativeQuery = true)
     Page<MemberProjection> findByNatvieProjection(Pageable pageable);
+
+    @Query(value = "select m.member_id as id, m.username, t.name as teamName " +
+            "from member m left join team t on m.team_id = t.team_id",
+            nativeQuery = true)
+    Slice<MemberProjection> findSliceByNatvieProjection(Pageable pageable);
+
+    default Page<MemberProjection> findByNatvieProjection(Pageable pageable, CountStrategy countStrategy) {
+        Slice<MemberProjection> slice = findSliceByNatvieProjection(pageable);
+        return PageableExecutionUtils.getPage(slice.getContent(), pageable, () -> countMembers(countStrategy));
+    }
+
+    default Page<MemberRow> findByNativeRows(Pageable pageable, CountStrategy countStrategy) {
+        Slice<MemberRow> slice = findSliceByNativeRows(pageable);
+        return PageableExecutionUtils.getPage(slice.getContent(), pageable, () -> countMembers(countStrategy));
+    }
+
+    Slice<Member> findSliceBy(Pageable pageable);
+
+    default Page<Member> findAll(Pageable pageable, CountStrategy countStrategy) {
+        Slice<Member> slice = findSliceBy(pageable);
+        return PageableExecutionUtils.getPage(slice.getContent(), pageable, () -> countMembers(countStrategy));
+    }
 }
@@ -1,9 +1,50 @@
 package study.datajpa.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import study.datajpa.dto.CursorPage;
 import study.datajpa.entity.Member;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public interface MemberRepositoryCustom {
     List<Member> findMemberCustom();
+
+    //offset 없이 (username(null이 먼저), id) 순으로 커서 다음/이전 size건 조회
+    CursorPage<Member> findByCursor(MemberCursor cursor, int size);
+
+    //페이징 메서드들의 countQuery(select count(m) from Member m)를 전략에 맞게 실행
+    long countMembers(CountStrategy countStrategy);
+
+    //전체 member를 fetchSize씩 스트리밍하며 처리, 처리한 row는 바로 detach 한다. (트랜잭션 안에서 호출)
+    long forEachMember(int fetchSize, Consumer<? super Member> action);
+
+    //전체 member의 (id, username)만 fetchSize씩 스트리밍 (트랜잭션 안에서 호출, UsernameIndex 적재용)
+    long forEachUsername(int fetchSize, BiConsumer<Long, String> action);
+
+    //age >= :age 인 member의 나이를 +1, 영속성 컨텍스트에서는 대상 member만 detach 한다. (다른 엔티티는 그대로 managed)
+    int bulkAgePlus(int age);
+
+    //members의 초기화 안 된 team 프록시를 한 번의 in 쿼리로 로딩 (DTO 매핑 전에 호출)
+    void prefetchTeams(Collection<Member> members);
+
+    //findProjectionByUsername과 같지만 projection 메타데이터(컴파일된 SpEL)를 타입별로 캐시해서 row당 비용을 줄인다. (인터페이스만)
+    //closed projection(중첩 포함)은 엔티티 대신 필요한 컬럼만 join 쿼리 한 번으로 조회한다.
+    <T> List<T> findCompiledProjectionByUsername(String username, Class<T> type);
+
+    //JpaSpecificationExecutor.findAll(spec) 대체: MemberSpec 조합은 JPQL로 바꿔 query plan cache를 탄다.
+    List<Member> findAll(Specification<Member> spec);
+
+    //findSliceByNatvieProjection과 같은 쿼리를 JDBC로 직접 실행해 MemberRow로 매핑 (sort: id, username, teamName)
+    Slice<MemberRow> findSliceByNativeRows(Pageable pageable);
+
+    //username인 member들의 나이를 delta만큼 변경, 비관적 락(select ... for update)으로 다른 수정자를 기다리게 한다. (findLockByUsername)
+    int addAgeWithPessimisticLock(String username, int delta);
+
+    //같은 변경을 락 없이 읽고 @Version으로 충돌을 확인, 충돌하면 OptimisticLockRetry 설정대로 재시도한다. (트랜잭션 밖에서 호출)
+    int addAgeWithOptimisticLock(String username, int delta);
 }
@@ -1,19 +1,342 @@
 package study.datajpa.repository;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.CursorPage;
 import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.monitoring.LockMetrics;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @RequiredArgsConstructor //final 선언한 애들 생성자를 만들어줌
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    private static final int PREFETCH_CHUNK_SIZE = 1000;
+    private static final Map<String, String> NATIVE_ROW_COLUMNS = Map.of(
+            "id", "m.member_id",
+            "username", "m.username",
+            "teamName", "t.name");
+
     private final EntityManager em;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final LockMetrics lockMetrics;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public List<Member> findMemberCustom() {
         return em.createQuery("select m from Member m")
                 .getResultList();
     }
+
+    @Override
+    public CursorPage<Member> findByCursor(MemberCursor cursor, int size) {
+        //null username은 DB와 상관없이 맨 앞에 정렬하고, > / < 비교가 되지 않으므로 is null 조건으로 따로 찾는다.
+        TypedQuery<Member> query;
+        if (cursor == null) {
+            query = em.createQuery("select m from Member m order by m.username asc nulls first, m.id asc", Member.class);
+        } else if (cursor.isForward()) {
+            query = em.createQuery("select m from Member m where " + (cursor.getUsername() == null
+                    ? "(m.username is null and m.id > :id) or m.username is not null"
+                    : "m.username > :username or (m.username = :username and m.id > :id)") +
+                    " order by m.username asc nulls first, m.id asc", Member.class);
+        } else {
+            //이전 페이지는 역순으로 읽은 뒤 뒤집는다.
+            query = em.createQuery("select m from Member m where " + (cursor.getUsername() == null
+                    ? "m.username is null and m.id < :id"
+                    : "m.username < :username or (m.username = :username and m.id < :id) or m.username is null") +
+                    " order by m.username desc nulls last, m.id desc", Member.class);
+        }
+
+        if (cursor != null) {
+            query.setParameter("id", cursor.getId());
+            if (cursor.getUsername() != null) {
+                query.setParameter("username", cursor.getUsername());
+            }
+        }
+
+        //한 건 더 읽어서 다음(이전) 페이지 존재 여부를 판단, count 쿼리 없음
+        List<Member> rows = query.setMaxResults(size + 1).getResultList();
+        boolean hasMore = rows.size() > size;
+        List<Member> content = new ArrayList<>(hasMore ? rows.subList(0, size) : rows);
+
+        boolean forward = cursor == null || cursor.isForward();
+        if (!forward) {
+            Collections.reverse(content);
+        }
+
+        if (content.isEmpty()) {
+            return new CursorPage<>(content, size, null, null);
+        }
+
+        Member first = content.get(0);
+        Member last = content.get(content.size() - 1);
+        boolean hasNext = !forward || hasMore;
+        boolean hasPrev = forward ? cursor != null : hasMore;
+
+        return new CursorPage<>(content, size,
+                hasNext ? MemberCursor.next(last.getUsername(), last.getId()).encode() : null,
+                hasPrev ? MemberCursor.prev(first.getUsername(), first.getId()).encode() : null);
+    }
+
+    @Override
+    public long countMembers(CountStrategy countStrategy) {
+        switch (countStrategy) {
+            case CACHED:
+                //query cache에 저장, member 테이블에 insert/update/delete(bulk 포함)가 일어나면 hibernate가 무효화한다.
+                return em.createQuery("select count(m) from Member m", Long.class)
+                        .setHint(QueryHints.CACHEABLE, true)
+                        .setHint(QueryHints.CACHE_REGION, "member-count")
+                        .getSingleResult();
+            case ESTIMATED:
+                Long estimated = em.unwrap(Session.class).doReturningWork(this::estimateMemberCount);
+                return estimated != null ? estimated : countMembers(CountStrategy.EXACT);
+            default:
+                return em.createQuery("select count(m) from Member m", Long.class)
+                        .getSingleResult();
+        }
+    }
+
+    //통계를 지원하지 않거나 아직 수집되지 않았으면 null
+    private Long estimateMemberCount(Connection connection) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        String sql;
+        if ("H2".equals(product)) {
+            sql = "select row_count_estimate from information_schema.tables where table_name = 'MEMBER'";
+        } else if ("PostgreSQL".equals(product)) {
+            sql = "select reltuples::bigint from pg_class where relname = 'member'";
+        } else {
+            return null;
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) {
+                return null;
+            }
+            long count = rs.getLong(1);
+            return count >= 0 ? count : null;
+        }
+    }
+
+    @Override
+    public long forEachMember(int fetchSize, Consumer<? super Member> action) {
+        long count = 0;
+        //ScrollableResults 기반 Stream: 전체를 List로 올리지 않고 fetchSize씩 읽는다.
+        try (Stream<Member> members = em.createQuery("select m from Member m left join fetch m.team order by m.id", Member.class)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true) //스냅샷을 만들지 않음
+                .setHint(QueryHints.CACHE_MODE, CacheMode.IGNORE) //2차 캐시에 넣지 않음
+                .getResultStream()) {
+            for (Member member : (Iterable<Member>) members::iterator) {
+                action.accept(member);
+                em.detach(member); //영속성 컨텍스트가 커지지 않도록 바로 분리
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long forEachUsername(int fetchSize, BiConsumer<Long, String> action) {
+        long count = 0;
+        //스칼라 조회라 영속성 컨텍스트에 엔티티가 쌓이지 않는다.
+        try (Stream<Object[]> rows = em.createQuery("select m.id, m.username from Member m", Object[].class)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .getResultStream()) {
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                action.accept((Long) row[0], (String) row[1]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    @Transactional
+    public int bulkAgePlus(int age) {
+        return BulkUpdateSupport.executeAndEvict(em, eventPublisher, Member.class, m -> m.getAge() >= age, () ->
+                em.createQuery("update versioned Member m set m.age = m.age + 1 where m.age >= :age")
+                        .setParameter("age", age)
+                        .executeUpdate());
+    }
+
+    @Override
+    @Transactional
+    public int addAgeWithPessimisticLock(String username, int delta) {
+        long start = System.nanoTime();
+        List<Member> members = em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", username)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        lockMetrics.lockWait("member.addAge:pessimistic", System.nanoTime() - start); //다른 트랜잭션이 커밋할 때까지 기다린 시간 포함
+
+        members.forEach(member -> member.setAge(member.getAge() + delta));
+        return members.size();
+    }
+
+    @Override
+    public int addAgeWithOptimisticLock(String username, int delta) {
+        return optimisticLockRetry.execute("member.addAge:optimistic", () -> {
+            List<Member> members = em.createQuery("select m from Member m where m.username = :username", Member.class)
+                    .setParameter("username", username)
+                    .getResultList();
+            members.forEach(member -> member.setAge(member.getAge() + delta)); //커밋 시 update ... where version = ?
+            return members.size();
+        });
+    }
+
+    @Override
+    public void prefetchTeams(Collection<Member> members) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        Set<Long> teamIds = new LinkedHashSet<>();
+        for (Member member : members) {
+            Team team = member.getTeam();
+            if (team == null || Hibernate.isInitialized(team)) {
+                continue;
+            }
+            if (cache.contains(Team.class, team.getId())) { //프록시의 id 조회는 초기화하지 않는다.
+                Hibernate.initialize(team); //2차 캐시에서 채운다. (select 없음)
+            } else {
+                teamIds.add(team.getId());
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(teamIds);
+        for (int from = 0; from < ids.size(); from += PREFETCH_CHUNK_SIZE) {
+            //로딩된 team이 영속성 컨텍스트에 올라가므로 이후 프록시 접근은 select 없이 초기화된다.
+            em.createQuery("select t from Team t where t.id in :ids", Team.class)
+                    .setParameter("ids", ids.subList(from, Math.min(from + PREFETCH_CHUNK_SIZE, ids.size())))
+                    .getResultList();
+        }
+    }
+
+    @Override
+    public <T> List<T> findCompiledProjectionByUsername(String username, Class<T> type) {
+        CompiledProjection<T> projection = CompiledProjection.of(type);
+        if (projection.isClosed()) {
+            return findClosedProjection(projection, username);
+        }
+
+        List<Member> members = em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", username)
+                .setHint(QueryHints.READ_ONLY, true) //projection만 만들고 버리므로 스냅샷 불필요
+                .getResultList();
+
+        List<T> result = new ArrayList<>(members.size());
+        for (Member member : members) {
+            result.add(projection.project(member));
+        }
+        return result;
+    }
+
+    //closed projection은 필요한 컬럼만 join 한 번으로 읽는다. (엔티티 생성, 스냅샷 없음)
+    private <T> List<T> findClosedProjection(CompiledProjection<T> projection, String username) {
+        List<?> rows = em.createQuery(projection.selectFrom("Member", "m") + " where m.username = :username")
+                .setParameter("username", username)
+                .getResultList();
+
+        List<T> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            //컬럼이 하나면 Object[]가 아니라 값 자체가 온다.
+            result.add(projection.fromTuple(row instanceof Object[] ? (Object[]) row : new Object[]{row}));
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Member> findAll(Specification<Member> spec) {
+        if (spec instanceof MemberSpec.Shaped) {
+            MemberSpec.Shaped shaped = (MemberSpec.Shaped) spec;
+            TypedQuery<Member> query = em.createQuery(shaped.toJpql(), Member.class);
+            List<Object> values = shaped.getValues();
+            for (int i = 0; i < values.size(); i++) {
+                query.setParameter(i + 1, values.get(i));
+            }
+            return query.getResultList();
+        }
+
+        //직접 만든 Specification은 기존처럼 Criteria로
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Member> query = builder.createQuery(Member.class);
+        Root<Member> root = query.from(Member.class);
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return em.createQuery(query.select(root)).getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<MemberRow> findSliceByNativeRows(Pageable pageable) {
+        String sql = "select m.member_id as id, m.username, t.name as teamName" +
+                " from member m left join team t on m.team_id = t.team_id" +
+                orderBy(pageable.getSort()) +
+                (pageable.isPaged() ? " limit ? offset ?" : "");
+
+        em.flush(); //JDBC로 직접 읽으므로 쓰기 지연된 변경을 먼저 반영
+        List<MemberRow> rows = em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                if (pageable.isPaged()) {
+                    ps.setInt(1, pageable.getPageSize() + 1); //한 건 더 읽어서 다음 페이지 여부 판단
+                    ps.setLong(2, pageable.getOffset());
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    return MemberRow.readAll(rs, pageable.isPaged() ? pageable.getPageSize() + 1 : 16);
+                }
+            }
+        });
+
+        boolean hasNext = pageable.isPaged() && rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+
+    //정렬 프로퍼티는 허용된 컬럼으로만 바꾼다. (SQL 인젝션 방지)
+    private static String orderBy(Sort sort) {
+        if (sort.isUnsorted()) {
+            return "";
+        }
+        StringBuilder orderBy = new StringBuilder(" order by ");
+        for (Sort.Order order : sort) {
+            String column = NATIVE_ROW_COLUMNS.get(order.getProperty());
+            if (column == null) {
+                throw new IllegalArgumentException("정렬할 수 없는 프로퍼티입니다: " + order.getProperty());
+            }
+            orderBy.append(orderBy.length() > 10 ? ", " : "").append(column).append(order.isAscending() ? " asc" : " desc");
+        }
+        return orderBy.toString();
+    }
 }
@@ -0,0 +1,60 @@
+package study.datajpa.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MemberProjection의 값 객체 구현. 네이티브 쿼리 ResultSet을 리플렉션/프록시 없이 바로 담는다.
+ * id는 long으로 들고 있고, MemberProjection.getId()로 꺼낼 때만 박싱된다.
+ */
+public final class MemberRow implements MemberProjection {
+
+    private final long id;
+    private final String username;
+    private final String teamName;
+
+    public MemberRow(long id, String username, String teamName) {
+        this.id = id;
+        this.username = username;
+        this.teamName = teamName;
+    }
+
+    //컬럼 인덱스는 ResultSet마다 한 번만 찾는다. (id, username, teamName 라벨 필요)
+    static List<MemberRow> readAll(ResultSet rs, int expectedRows) throws SQLException {
+        int idColumn = rs.findColumn("id");
+        int usernameColumn = rs.findColumn("username");
+        int teamNameColumn = rs.findColumn("teamName");
+
+        List<MemberRow> rows = new ArrayList<>(expectedRows);
+        while (rs.next()) {
+            rows.add(new MemberRow(rs.getLong(idColumn), rs.getString(usernameColumn), rs.getString(teamNameColumn)));
+        }
+        return rows;
+    }
+
+    public long id() {
+        return id;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getTeamName() {
+        return teamName;
+    }
+
+    @Override
+    public String toString() {
+        return "MemberRow{id=" + id + ", username=" + username + ", teamName=" + teamName + "}";
+    }
+}
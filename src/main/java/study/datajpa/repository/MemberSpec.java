@@ -6,20 +6,116 @@ import study.datajpa.entity.Member;
 import study.datajpa.entity.Team;
 
 import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 public class MemberSpec {
-    public static Specification<Member> teamName(final String teamName) {
-        return (Specification<Member>) (root, query, builder) -> {
-            if(StringUtils.isEmpty(teamName)) {
-                return null;
-            }
-
+    public static Shaped teamName(final String teamName) {
+        if (StringUtils.isEmpty(teamName)) {
+            return Shaped.EMPTY; //조건이 빠지면 join도 하지 않는다.
+        }
+        return new Shaped("t.name = ?", "join m.team t", teamName, (root, query, builder) -> {
             Join<Member, Team> t = root.join("team", JoinType.INNER);//회원과 조인
             return builder.equal(t.get("name"), teamName);
-        };
+        });
+    }
+
+    public static Shaped username(final String username) {
+        return new Shaped("m.username = ?", null, username,
+                (root, query, builder) -> builder.equal(root.get("username"), username));
     }
 
-    public static Specification<Member> username(final String username) {
-        return (Specification<Member>) (root, query, builder) -> builder.equal(root.get("username"), username);
+    /**
+     * Criteria 대신 JPQL 조각(where, join)과 바인딩 값을 같이 들고 있는 Specification.
+     * 조합 구조가 같으면 JPQL 문자열도 같아서 hibernate query plan cache에서 번역 결과를 재사용하고 값만 다시 바인딩한다.
+     * (MemberRepository.findAll(Specification)에서 사용, 그 외 메서드는 toPredicate로 기존처럼 Criteria 사용)
+     */
+    public static final class Shaped implements Specification<Member> {
+
+        private static final long serialVersionUID = 1L;
+
+        static final Shaped EMPTY = new Shaped(null, Collections.emptySet(), Collections.emptyList(), (root, query, builder) -> null);
+
+        private final String where; //값 자리는 ? (없으면 null)
+        private final Set<String> joins;
+        private final List<Object> values;
+        private final Specification<Member> criteria;
+
+        private Shaped(String where, String join, Object value, Specification<Member> criteria) {
+            this(where, join == null ? Collections.emptySet() : Collections.singleton(join), Collections.singletonList(value), criteria);
+        }
+
+        private Shaped(String where, Set<String> joins, List<Object> values, Specification<Member> criteria) {
+            this.where = where;
+            this.joins = joins;
+            this.values = values;
+            this.criteria = criteria;
+        }
+
+        @Override
+        public Specification<Member> and(Specification<Member> other) {
+            if (other instanceof Shaped) {
+                return combine((Shaped) other, "and");
+            }
+            return Specification.super.and(other);
+        }
+
+        @Override
+        public Specification<Member> or(Specification<Member> other) {
+            if (other instanceof Shaped) {
+                return combine((Shaped) other, "or");
+            }
+            return Specification.super.or(other);
+        }
+
+        private Shaped combine(Shaped other, String operator) {
+            if (other.where == null) {
+                return this;
+            }
+            if (where == null) {
+                return other;
+            }
+            Set<String> mergedJoins = new LinkedHashSet<>(joins);
+            mergedJoins.addAll(other.joins);
+            List<Object> mergedValues = new ArrayList<>(values);
+            mergedValues.addAll(other.values);
+            Specification<Member> mergedCriteria = "and".equals(operator)
+                    ? Specification.where(criteria).and(other.criteria)
+                    : Specification.where(criteria).or(other.criteria);
+            return new Shaped("(" + where + ") " + operator + " (" + other.where + ")", mergedJoins, mergedValues, mergedCriteria);
+        }
+
+        @Override
+        public Predicate toPredicate(Root<Member> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
+            return criteria.toPredicate(root, query, builder);
+        }
+
+        //select m from Member m join m.team t where (m.username = ?1) and (t.name = ?2)
+        String toJpql() {
+            StringBuilder jpql = new StringBuilder("select m from Member m");
+            for (String join : joins) {
+                jpql.append(' ').append(join);
+            }
+            if (where != null) {
+                jpql.append(" where ");
+                int position = 0;
+                for (int i = 0; i < where.length(); i++) {
+                    char c = where.charAt(i);
+                    if (c == '?') {
+                        jpql.append('?').append(++position);
+                    } else {
+                        jpql.append(c);
+                    }
+                }
+            }
+            return jpql.toString();
+        }
+
+        List<Object> getValues() {
+            return where == null ? Collections.emptyList() : values;
+        }
     }
 }
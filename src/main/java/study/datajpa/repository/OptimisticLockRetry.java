@@ -0,0 +1,91 @@
+package study.datajpa.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.monitoring.LockMetrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 낙관적 락(@Version) 충돌 시 작업을 새 트랜잭션에서 처음부터 다시 실행한다.
+ * 충돌한 트랜잭션의 영속성 컨텍스트는 오래된 값을 들고 있으므로 다시 읽어야 하고, 그래서 이미 시작된 트랜잭션 안에서는 쓸 수 없다.
+ *
+ * 재시도 전 대기 시간은 backoff * 2^(n-1) (최대 max-backoff)에서 jitter 비율만큼 무작위로 줄인 값이다.
+ * 같이 충돌한 트랜잭션들이 같은 순간에 다시 부딪히지 않게 한다.
+ */
+@Slf4j
+@Component
+public class OptimisticLockRetry {
+
+    private final TransactionTemplate transactionTemplate;
+    private final LockMetrics lockMetrics;
+    private final int maxAttempts;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final double jitter;
+
+    public OptimisticLockRetry(PlatformTransactionManager transactionManager, LockMetrics lockMetrics,
+                               @Value("${datajpa.optimistic-retry.max-attempts:5}") int maxAttempts,
+                               @Value("${datajpa.optimistic-retry.backoff-millis:10}") long backoffMillis,
+                               @Value("${datajpa.optimistic-retry.max-backoff-millis:200}") long maxBackoffMillis,
+                               @Value("${datajpa.optimistic-retry.jitter:0.5}") double jitter) {
+        if (maxAttempts < 1 || jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("max-attempts는 1 이상, jitter는 0~1 이어야 합니다.");
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lockMetrics = lockMetrics;
+        this.maxAttempts = maxAttempts;
+        this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis);
+        this.jitter = jitter;
+    }
+
+    /**
+     * work를 트랜잭션 안에서 실행하고, 커밋(flush)까지 포함해 낙관적 락 충돌이 나면 max-attempts까지 재시도한다.
+     * 재시도를 다 쓰면 마지막 충돌 예외를 그대로 던진다.
+     */
+    public <T> T execute(String operation, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(operation + ": 트랜잭션 안에서는 재시도할 수 없습니다.");
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException e) {
+                lockMetrics.conflict(operation);
+                if (attempt >= maxAttempts) {
+                    lockMetrics.exhausted(operation);
+                    throw e;
+                }
+
+                long backoff = backoff(attempt);
+                lockMetrics.retry(operation, backoff);
+                log.debug("{} 낙관적 락 충돌 {}/{}, {}ms 후 재시도", operation, attempt, maxAttempts,
+                        TimeUnit.NANOSECONDS.toMillis(backoff));
+                sleep(backoff, e);
+            }
+        }
+    }
+
+    long backoff(int attempt) {
+        long delay = Math.min(maxBackoffNanos, backoffNanos << Math.min(attempt - 1, 20));
+        return delay - (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+    }
+
+    private static void sleep(long nanos, OptimisticLockingFailureException conflict) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+}
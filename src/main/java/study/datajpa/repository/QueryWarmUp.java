@@ -0,0 +1,270 @@
+package study.datajpa.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.QueryWarmUpResult;
+import study.datajpa.monitoring.RepositoryMetrics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.metamodel.ManagedType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 기동 시 리포지토리 쿼리를 미리 준비한다. (datajpa.warm-up.enabled=true)
+ *
+ * - @Query JPQL: em.createQuery, 엔티티의 @NamedQuery/@NamedNativeQuery: em.createNamedQuery로 만들어 검증하고
+ *   파싱 결과를 hibernate query plan cache에 넣는다.
+ * - 파생 쿼리, native 쿼리: 쿼리 문자열이 실행 시점에 만들어지므로 빈 값 파라미터로 executions번 실행한다.
+ *   실행은 읽기 전용 + 롤백 트랜잭션이고 매핑 코드의 JIT 워밍업도 겸한다.
+ *
+ * 실패한 쿼리가 있으면 fail-on-error에 따라 기동을 중단한다. (native 쿼리는 이 실행이 첫 검증)
+ * 워밍업 중의 리포지토리 호출은 RepositoryMetrics에 기록하지 않는다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "datajpa.warm-up.enabled", havingValue = "true")
+public class QueryWarmUp implements ApplicationRunner {
+
+    private static final String SKIPPED = "skipped: "; //실패로 보지 않음
+
+    private final ApplicationContext applicationContext;
+    private final EntityManagerFactory emf;
+    private final EntityManager em;
+    private final TransactionTemplate rollbackOnly;
+    private final ObjectProvider<RepositoryMetrics> repositoryMetrics;
+    private final int executions;
+    private final boolean failOnError;
+    private volatile List<QueryWarmUpResult> results = Collections.emptyList();
+
+    public QueryWarmUp(ApplicationContext applicationContext, EntityManagerFactory emf, EntityManager em,
+                       PlatformTransactionManager transactionManager, ObjectProvider<RepositoryMetrics> repositoryMetrics,
+                       @Value("${datajpa.warm-up.executions:3}") int executions,
+                       @Value("${datajpa.warm-up.fail-on-error:true}") boolean failOnError) {
+        this.applicationContext = applicationContext;
+        this.emf = emf;
+        this.em = em;
+        this.rollbackOnly = new TransactionTemplate(transactionManager);
+        this.rollbackOnly.setReadOnly(true);
+        this.repositoryMetrics = repositoryMetrics;
+        this.executions = executions;
+        this.failOnError = failOnError;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        List<QueryWarmUpResult> warmed = new ArrayList<>(namedQueries());
+
+        Repositories repositories = new Repositories(applicationContext);
+        Runnable warmUpRepositories = () -> {
+            for (Class<?> domainType : repositories) {
+                RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+                Object repository = repositories.getRepositoryFor(domainType).orElseThrow();
+                for (Method method : information.getQueryMethods()) {
+                    warmed.add(warmUp(information, repository, method));
+                }
+            }
+        };
+        //워밍업 실행은 지연시간 통계에 넣지 않는다. (다른 스레드의 실제 호출 기록은 그대로)
+        RepositoryMetrics metrics = repositoryMetrics.getIfAvailable();
+        if (metrics != null) {
+            metrics.runUnrecorded(warmUpRepositories);
+        } else {
+            warmUpRepositories.run();
+        }
+        results = Collections.unmodifiableList(warmed);
+
+        List<QueryWarmUpResult> failed = new ArrayList<>();
+        for (QueryWarmUpResult result : warmed) {
+            log.info("warm-up {} [{}] compile={}us first={}us last={}us{}", result.getQuery(), result.getKind(),
+                    result.getCompileMicros(), result.getFirstExecutionMicros(), result.getLastExecutionMicros(),
+                    result.getError() == null ? "" : " error=" + result.getError());
+            if (result.getError() != null && !result.getError().startsWith(SKIPPED)) {
+                failed.add(result);
+            }
+        }
+        log.info("warm-up {} queries in {}ms, {} failed", warmed.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failed.size());
+
+        if (!failed.isEmpty() && failOnError) {
+            throw new IllegalStateException("쿼리 warm-up 실패: " + failed.get(0).getQuery() + " - " + failed.get(0).getError());
+        }
+    }
+
+    public List<QueryWarmUpResult> getResults() {
+        return results;
+    }
+
+    //엔티티에 선언된 named query를 하나씩 만들어 본다. (만들 때 파싱/검증되고 plan cache에 남는다)
+    private List<QueryWarmUpResult> namedQueries() {
+        List<String> names = new ArrayList<>();
+        for (ManagedType<?> type : emf.getMetamodel().getManagedTypes()) {
+            Class<?> javaType = type.getJavaType();
+            if (javaType == null) {
+                continue;
+            }
+            AnnotatedElementUtils.findMergedRepeatableAnnotations(javaType, NamedQuery.class, NamedQueries.class)
+                    .forEach(namedQuery -> names.add(namedQuery.name()));
+            AnnotatedElementUtils.findMergedRepeatableAnnotations(javaType, NamedNativeQuery.class, NamedNativeQueries.class)
+                    .forEach(namedQuery -> names.add(namedQuery.name()));
+        }
+
+        List<QueryWarmUpResult> result = new ArrayList<>();
+        for (String name : names) {
+            long start = System.nanoTime();
+            try {
+                rollbackOnly.executeWithoutResult(status -> em.createNamedQuery(name));
+            } catch (RuntimeException e) {
+                result.add(new QueryWarmUpResult("named:" + name, "NAMED", 0, 0, 0, e.getMessage()));
+                continue;
+            }
+            result.add(new QueryWarmUpResult("named:" + name, "NAMED", micros(System.nanoTime() - start), 0, 0, null));
+        }
+        return result;
+    }
+
+    private QueryWarmUpResult warmUp(RepositoryInformation information, Object repository, Method method) {
+        String name = information.getRepositoryInterface().getSimpleName() + "." + method.getName();
+        Query query = AnnotatedElementUtils.findMergedAnnotation(method, Query.class);
+        String kind = query == null ? "DERIVED" : query.nativeQuery() ? "NATIVE" : "JPQL";
+
+        long compileMicros = 0;
+        if ("JPQL".equals(kind) && !query.value().contains("#{")) { //SpEL이 있으면 실행 시 문자열이 바뀐다.
+            long start = System.nanoTime();
+            try {
+                rollbackOnly.executeWithoutResult(status -> {
+                    em.createQuery(query.value()); //파싱 결과가 query plan cache에 남는다.
+                    if (!query.countQuery().isEmpty()) {
+                        em.createQuery(query.countQuery());
+                    }
+                });
+            } catch (RuntimeException e) {
+                return new QueryWarmUpResult(name, kind, 0, 0, 0, e.getMessage());
+            }
+            compileMicros = micros(System.nanoTime() - start);
+        }
+
+        if (executions <= 0) {
+            return new QueryWarmUpResult(name, kind, compileMicros, 0, 0, null);
+        }
+        if (method.isAnnotationPresent(Modifying.class) || method.isAnnotationPresent(Lock.class)) {
+            return new QueryWarmUpResult(name, kind, compileMicros, 0, 0, SKIPPED + "modifying/lock");
+        }
+        Object[] args = arguments(method, information.getDomainType());
+        if (args == null) {
+            return new QueryWarmUpResult(name, kind, compileMicros, 0, 0, SKIPPED + "unsupported parameter");
+        }
+
+        long first = 0;
+        long last = 0;
+        for (int i = 0; i < executions; i++) {
+            long start = System.nanoTime();
+            try {
+                rollbackOnly.executeWithoutResult(status -> {
+                    status.setRollbackOnly();
+                    invoke(repository, method, args);
+                });
+            } catch (RuntimeException e) {
+                return new QueryWarmUpResult(name, kind, compileMicros, first, last, e.getMessage());
+            }
+            last = micros(System.nanoTime() - start);
+            if (i == 0) {
+                first = last;
+            }
+        }
+        return new QueryWarmUpResult(name, kind, compileMicros, first, last, null);
+    }
+
+    //결과가 없어도 되는 빈 값 파라미터, 만들 수 없는 타입이 있으면 null
+    static Object[] arguments(Method method, Class<?> domainType) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = types[i];
+            if (type == Pageable.class) {
+                args[i] = PageRequest.of(0, 1);
+            } else if (type == Sort.class) {
+                args[i] = Sort.unsorted();
+            } else if (type == Class.class) {
+                args[i] = domainType; //dynamic projection
+            } else if (Collection.class.isAssignableFrom(type)) {
+                //빈 목록은 in ()이 되어 H2 외의 DB(PostgreSQL, MySQL)에서 문법 오류이므로 값 하나짜리 목록
+                Object element = scalar(ResolvableType.forMethodParameter(method, i).asCollection().resolveGeneric(0));
+                if (element == null) {
+                    return null;
+                }
+                if (type.isAssignableFrom(List.class)) {
+                    args[i] = Collections.singletonList(element);
+                } else if (type.isAssignableFrom(Set.class)) {
+                    args[i] = Collections.singleton(element);
+                } else {
+                    return null;
+                }
+            } else {
+                args[i] = scalar(type);
+                if (args[i] == null) {
+                    return null;
+                }
+            }
+        }
+        return args;
+    }
+
+    private static Object scalar(Class<?> type) {
+        if (type == String.class) {
+            return "";
+        } else if (type == int.class || type == Integer.class) {
+            return 0;
+        } else if (type == long.class || type == Long.class) {
+            return 0L;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return false;
+        }
+        return null;
+    }
+
+    private static void invoke(Object repository, Method method, Object[] args) {
+        try {
+            method.invoke(repository, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getTargetException();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
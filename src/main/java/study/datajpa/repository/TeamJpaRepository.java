@@ -1,5 +1,6 @@
 package study.datajpa.repository;
 
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
 import study.datajpa.entity.Team;
 
@@ -24,9 +25,12 @@ public class TeamJpaRepository {
     }
 
     public List<Team> findAll() {
-        return em.createQuery("select t from Team t", Team.class).getResultList();
+        return em.createQuery("select t from Team t", Team.class)
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList();
     }
 
+    //2차 캐시(team region)에 있으면 DB 조회 없음
     public Team find(Long id) {
         return em.find(Team.class, id);
     }
@@ -1,8 +1,16 @@
 package study.datajpa.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import study.datajpa.entity.Team;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+
 public interface TeamRepository extends JpaRepository<Team, Long> {
 
+    //id 목록은 query cache, Team 엔티티는 2차 캐시에서 가져온다.
+    @Override
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    List<Team> findAll();
 }
@@ -0,0 +1,352 @@
+package study.datajpa.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.UsernameIndexStats;
+import study.datajpa.entity.MemberChangedEvent;
+import study.datajpa.entity.MembersBulkChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * GET /members/search용 username 검색 인덱스. LIKE '%q%'처럼 member 테이블 전체를 읽지 않고 메모리에서 찾는다.
+ *
+ * 기동 후 (id, username)을 모두 읽어 UsernameIndexSnapshot(불변)을 만들고,
+ * 이후 저장/수정/삭제는 MemberChangedEvent를 커밋 후에 받아 pending에 모았다가 검색할 때 스냅샷 결과에 덮어쓴다.
+ * pending이 max-pending을 넘으면 username-index 스레드에서 스냅샷에 합친 새 스냅샷을 만들어 교체한다. (DB는 읽지 않음)
+ * 적재/합치기는 모두 그 스레드 하나에서 순서대로 하므로 기동 스레드나 커밋한 요청 스레드를 막지 않는다.
+ * bulk 저장/update(MembersBulkChangedEvent)는 커밋 후 그 스레드에서 DB를 다시 읽는다. 여러 번 와도 대기 중인 적재 하나로 합친다.
+ * 이벤트가 없는 JPQL bulk update/delete를 직접 실행했으면 rebuild()로 DB에서 다시 읽어야 한다.
+ */
+@Slf4j
+@Component
+public class UsernameIndex implements DisposableBean {
+
+    private final MemberRepository memberRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int fetchSize;
+    private final int maxPending;
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "username-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile State state = new State(UsernameIndexSnapshot.EMPTY, new ConcurrentHashMap<>());
+    private volatile boolean loaded;
+    private long sequence; //pending 변경 순번, this로 보호
+    private boolean compactionScheduled; //this로 보호
+    private boolean reloadScheduled; //this로 보호
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private volatile long lastBuildMillis;
+
+    public UsernameIndex(MemberRepository memberRepository, PlatformTransactionManager transactionManager,
+                         @Value("${datajpa.username-index.fetch-size:1000}") int fetchSize,
+                         @Value("${datajpa.username-index.max-pending:1024}") int maxPending) {
+        this.memberRepository = memberRepository;
+        //읽기 전용이면 replica로 라우팅될 수 있는데(ReplicaRoutingConfig), 복제 지연이 있으면
+        //"읽기 시작 전에 커밋된 변경은 DB 값에 들어 있다"는 load()의 가정이 깨지므로 primary에서 읽는다.
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.fetchSize = fetchSize;
+        this.maxPending = maxPending;
+    }
+
+    //기동 후 처음 적재가 끝났는지, 그 전에는 검색 결과가 비어 있다.
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * q를 포함하는(1~2글자는 q로 시작하는) member를 대소문자 구분 없이 username, id 순으로 최대 limit개 찾는다.
+     * teamName은 채우지 않는다.
+     */
+    public List<MemberDto> search(String q, int limit) {
+        searches.increment();
+        String query = UsernameIndexSnapshot.lower(q.trim());
+        State current = state;
+        Map<Long, Pending> pending = current.pending;
+
+        List<Match> matches = new ArrayList<>();
+        //pending에 있는 member는 스냅샷 값이 예전 값이다.
+        for (int ordinal : current.base.search(query, limit, pending::containsKey)) {
+            String username = current.base.username(ordinal);
+            matches.add(new Match(current.base.id(ordinal), username, UsernameIndexSnapshot.lower(username), false));
+        }
+        //pending은 max-pending 근처로 유지되므로 전부 확인한다.
+        pending.forEach((id, change) -> {
+            if (change.lowerUsername != null && change.matches(query)) {
+                matches.add(new Match(id, change.username, change.lowerUsername, true));
+            }
+        });
+
+        //스냅샷 검색 이후 pending에 들어온 member는 양쪽에 있을 수 있다.
+        return matches.stream()
+                .filter(match -> match.fromPending || !pending.containsKey(match.id))
+                .sorted(Comparator.comparing((Match match) -> match.lowerUsername).thenComparingLong(match -> match.id))
+                .limit(limit)
+                .map(match -> new MemberDto(match.id, match.username, null))
+                .collect(Collectors.toList());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        builder.execute(() -> {
+            try {
+                load();
+            } catch (RuntimeException e) {
+                log.error("username index 적재 실패, /members/search는 503을 반환합니다.", e);
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true) //커밋 후, 트랜잭션 밖이면 바로
+    public void onMembersBulkChanged(MembersBulkChangedEvent event) {
+        scheduleReload();
+    }
+
+    /**
+     * DB에서 (id, username)을 모두 다시 읽어 스냅샷을 만들고, 끝날 때까지 기다린다.
+     * 읽기 시작 전에 커밋된 변경은 DB 값에 들어 있으므로 pending에서 버리고, 읽는 동안 들어온 변경만 남긴다.
+     */
+    public void rebuild() {
+        await(builder.submit(this::load));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true) //커밋 후, 트랜잭션 밖이면 바로
+    public void onMemberChanged(MemberChangedEvent event) {
+        apply(event.getMemberId(), event.getUsername());
+    }
+
+    //username이 null이면 삭제
+    public synchronized void apply(Long id, String username) {
+        Map<Long, Pending> pending = state.pending;
+        pending.put(id, new Pending(username, ++sequence));
+        if (pending.size() > maxPending) {
+            scheduleCompaction();
+        }
+    }
+
+    public UsernameIndexStats stats() {
+        State current = state;
+        long pendingBytes = 0;
+        for (Pending change : current.pending.values()) {
+            pendingBytes += change.estimatedBytes();
+        }
+        return new UsernameIndexStats(current.base.size(), current.pending.size(), current.base.gramCount(),
+                current.base.estimatedBytes() + pendingBytes,
+                searches.sum(), rebuilds.sum(), compactions.sum(), lastBuildMillis);
+    }
+
+    @Override
+    public void destroy() {
+        builder.shutdownNow();
+    }
+
+    //테스트용: 지금까지 예약된 적재/합치기가 끝날 때까지 기다린다.
+    void awaitBuilds() {
+        await(builder.submit(() -> { }));
+    }
+
+    private void load() {
+        long start = System.nanoTime();
+        long upTo;
+        synchronized (this) {
+            upTo = sequence;
+        }
+        Collector rows = new Collector();
+        transactionTemplate.executeWithoutResult(status -> memberRepository.forEachUsername(fetchSize, rows::add));
+        UsernameIndexSnapshot base = rows.build();
+        install(base, upTo);
+        loaded = true;
+
+        rebuilds.increment();
+        lastBuildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("username index loaded: {} members, {} trigrams, ~{} bytes in {}ms",
+                base.size(), base.gramCount(), base.estimatedBytes(), lastBuildMillis);
+    }
+
+    //pending을 스냅샷에 합친다. 만드는 동안 검색은 이전 스냅샷 + pending을 그대로 본다.
+    private void compact() {
+        long start = System.nanoTime();
+        State current;
+        Map<Long, Pending> merging;
+        long upTo;
+        synchronized (this) {
+            compactionScheduled = false;
+            current = state;
+            merging = new HashMap<>(current.pending);
+            upTo = sequence;
+        }
+
+        Collector rows = new Collector();
+        for (int ordinal = 0; ordinal < current.base.size(); ordinal++) {
+            long id = current.base.id(ordinal);
+            if (!merging.containsKey(id)) {
+                rows.add(id, current.base.username(ordinal));
+            }
+        }
+        merging.forEach((id, change) -> rows.add(id, change.username));
+        install(rows.build(), upTo);
+
+        compactions.increment();
+        lastBuildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    //base에는 upTo번까지의 변경이 들어 있으므로 그 이후 변경만 pending에 남긴다.
+    private synchronized void install(UsernameIndexSnapshot base, long upTo) {
+        Map<Long, Pending> pending = new ConcurrentHashMap<>();
+        state.pending.forEach((id, change) -> {
+            if (change.sequence > upTo) {
+                pending.put(id, change);
+            }
+        });
+        state = new State(base, pending);
+        if (pending.size() > maxPending) {
+            scheduleCompaction();
+        }
+    }
+
+    //커밋한 스레드를 막지 않도록 기다리지 않는다. 아직 시작 안 한 적재가 있으면 그 적재가 이 커밋도 읽는다.
+    private synchronized void scheduleReload() {
+        if (reloadScheduled) {
+            return;
+        }
+        reloadScheduled = true;
+        try {
+            builder.execute(() -> {
+                synchronized (this) {
+                    reloadScheduled = false;
+                }
+                try {
+                    load();
+                } catch (RuntimeException e) {
+                    log.error("username index 재적재 실패", e);
+                }
+            });
+        } catch (RejectedExecutionException e) { //종료 중
+            reloadScheduled = false;
+        }
+    }
+
+    //this를 잡은 상태에서 호출
+    private void scheduleCompaction() {
+        if (compactionScheduled) {
+            return;
+        }
+        compactionScheduled = true;
+        try {
+            builder.execute(() -> {
+                try {
+                    compact();
+                } catch (RuntimeException e) {
+                    log.error("username index compaction 실패", e);
+                }
+            });
+        } catch (RejectedExecutionException e) { //종료 중
+            compactionScheduled = false;
+        }
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("username index 적재를 기다리다 중단됨", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static final class State {
+        final UsernameIndexSnapshot base;
+        final Map<Long, Pending> pending;
+
+        State(UsernameIndexSnapshot base, Map<Long, Pending> pending) {
+            this.base = base;
+            this.pending = pending;
+        }
+    }
+
+    private static final class Pending {
+        final String username; //삭제면 null
+        final String lowerUsername;
+        final long sequence;
+
+        Pending(String username, long sequence) {
+            this.username = username;
+            this.lowerUsername = username != null ? UsernameIndexSnapshot.lower(username) : null;
+            this.sequence = sequence;
+        }
+
+        boolean matches(String lowerQuery) {
+            return lowerQuery.length() < 3 ? lowerUsername.startsWith(lowerQuery) : lowerUsername.contains(lowerQuery);
+        }
+
+        //entry + Pending + username 두 개
+        long estimatedBytes() {
+            return 96 + (username != null ? 4L * username.length() : 0);
+        }
+    }
+
+    private static final class Match {
+        final long id;
+        final String username;
+        final String lowerUsername;
+        final boolean fromPending;
+
+        Match(long id, String username, String lowerUsername, boolean fromPending) {
+            this.id = id;
+            this.username = username;
+            this.lowerUsername = lowerUsername;
+            this.fromPending = fromPending;
+        }
+    }
+
+    private static final class Collector {
+        long[] ids = new long[1024];
+        String[] usernames = new String[1024];
+        int size;
+
+        void add(long id, String username) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                usernames = Arrays.copyOf(usernames, size * 2);
+            }
+            ids[size] = id;
+            usernames[size++] = username;
+        }
+
+        UsernameIndexSnapshot build() {
+            return UsernameIndexSnapshot.build(ids, usernames, size);
+        }
+    }
+}
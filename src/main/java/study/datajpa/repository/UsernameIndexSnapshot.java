@@ -0,0 +1,346 @@
+package study.datajpa.repository;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * UsernameIndex의 불변 스냅샷.
+ *
+ * username은 char[] 하나에 이어 붙이고 offset으로 자른다. 순번(ordinal)은 (소문자 username, id) 순이라 결과가 그대로 이름순이다.
+ * 소문자 3글자(trigram)마다 그 글자를 가진 순번 목록을 차이값 varint로 byte[] 하나에 담는다.
+ * 검색어가 3글자 이상이면 trigram 목록 교집합 후 실제로 포함하는지 확인하고, 1~2글자는 정렬 순서에서 prefix만 찾는다.
+ */
+final class UsernameIndexSnapshot {
+
+    static final UsernameIndexSnapshot EMPTY = build(new long[0], new String[0], 0);
+
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final long[] ids;
+    private final char[] names;
+    private final int[] nameOffsets; //순번 i의 username은 names[nameOffsets[i], nameOffsets[i + 1])
+    private final long[] grams; //정렬된 trigram 키
+    private final int[] postingOffsets; //grams[g]의 순번 목록은 postings[postingOffsets[g], postingOffsets[g + 1])
+    private final byte[] postings;
+
+    private UsernameIndexSnapshot(long[] ids, char[] names, int[] nameOffsets, long[] grams, int[] postingOffsets, byte[] postings) {
+        this.ids = ids;
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+        this.grams = grams;
+        this.postingOffsets = postingOffsets;
+        this.postings = postings;
+    }
+
+    //ids[0, size), usernames[0, size)로 만든다. username이 null이면 넣지 않는다.
+    static UsernameIndexSnapshot build(long[] ids, String[] usernames, int size) {
+        String[] keys = new String[size];
+        Integer[] order = new Integer[size];
+        int count = 0;
+        int chars = 0;
+        for (int i = 0; i < size; i++) {
+            if (usernames[i] != null) {
+                keys[i] = lower(usernames[i]);
+                order[count++] = i;
+                chars += usernames[i].length();
+            }
+        }
+        Arrays.sort(order, 0, count, (a, b) -> {
+            int c = keys[a].compareTo(keys[b]);
+            return c != 0 ? c : Long.compare(ids[a], ids[b]);
+        });
+
+        long[] sortedIds = new long[count];
+        char[] names = new char[chars];
+        int[] nameOffsets = new int[count + 1];
+        int occurrences = 0;
+        for (int ord = 0; ord < count; ord++) {
+            int i = order[ord];
+            sortedIds[ord] = ids[i];
+            String username = usernames[i];
+            username.getChars(0, username.length(), names, nameOffsets[ord]);
+            nameOffsets[ord + 1] = nameOffsets[ord] + username.length();
+            occurrences += Math.max(0, username.length() - 2);
+        }
+
+        //순번 순서대로 (trigram 키)를 모두 뽑고, 정렬/중복 제거해서 trigram 목록을 만든다. (boxing 없이 배열만)
+        long[] gramOfOccurrence = new long[occurrences];
+        int at = 0;
+        for (int ord = 0; ord < count; ord++) {
+            String key = keys[order[ord]];
+            for (int k = 0; k + 3 <= key.length(); k++) {
+                gramOfOccurrence[at++] = gram(key, k);
+            }
+        }
+        long[] grams = gramOfOccurrence.clone();
+        Arrays.sort(grams);
+        int gramCount = 0;
+        for (int k = 0; k < grams.length; k++) {
+            if (k == 0 || grams[k] != grams[k - 1]) {
+                grams[gramCount++] = grams[k];
+            }
+        }
+        grams = Arrays.copyOf(grams, gramCount);
+
+        //trigram별 순번 목록: 순번 오름차순으로 돌기 때문에 목록도 오름차순이고, 같은 username 안의 반복은 한 번만 넣는다.
+        int[] gramIndexOfOccurrence = new int[occurrences];
+        int[] lastOrdinal = new int[gramCount];
+        int[] counts = new int[gramCount];
+        Arrays.fill(lastOrdinal, -1);
+        at = 0;
+        for (int ord = 0; ord < count; ord++) {
+            int end = at + Math.max(0, keys[order[ord]].length() - 2);
+            for (; at < end; at++) {
+                int g = Arrays.binarySearch(grams, gramOfOccurrence[at]);
+                gramIndexOfOccurrence[at] = g;
+                if (lastOrdinal[g] != ord) {
+                    lastOrdinal[g] = ord;
+                    counts[g]++;
+                }
+            }
+        }
+        int[] listOffsets = new int[gramCount + 1];
+        for (int g = 0; g < gramCount; g++) {
+            listOffsets[g + 1] = listOffsets[g] + counts[g];
+        }
+        int[] lists = new int[listOffsets[gramCount]];
+        int[] filled = Arrays.copyOf(listOffsets, gramCount);
+        Arrays.fill(lastOrdinal, -1);
+        at = 0;
+        for (int ord = 0; ord < count; ord++) {
+            int end = at + Math.max(0, keys[order[ord]].length() - 2);
+            for (; at < end; at++) {
+                int g = gramIndexOfOccurrence[at];
+                if (lastOrdinal[g] != ord) {
+                    lastOrdinal[g] = ord;
+                    lists[filled[g]++] = ord;
+                }
+            }
+        }
+
+        int[] postingOffsets = new int[gramCount + 1];
+        ByteList postings = new ByteList();
+        for (int g = 0; g < gramCount; g++) {
+            int previous = -1;
+            for (int k = listOffsets[g]; k < listOffsets[g + 1]; k++) {
+                postings.writeVarInt(lists[k] - previous);
+                previous = lists[k];
+            }
+            postingOffsets[g + 1] = postings.size;
+        }
+        return new UsernameIndexSnapshot(sortedIds, names, nameOffsets, grams, postingOffsets, postings.toArray());
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    int gramCount() {
+        return grams.length;
+    }
+
+    long id(int ordinal) {
+        return ids[ordinal];
+    }
+
+    String username(int ordinal) {
+        return new String(names, nameOffsets[ordinal], nameOffsets[ordinal + 1] - nameOffsets[ordinal]);
+    }
+
+    //배열 본문 + 헤더 기준 대략적인 힙 사용량
+    long estimatedBytes() {
+        return 6L * ARRAY_HEADER_BYTES
+                + 8L * ids.length
+                + 2L * names.length
+                + 4L * nameOffsets.length
+                + 8L * grams.length
+                + 4L * postingOffsets.length
+                + postings.length;
+    }
+
+    /**
+     * lowerQuery(소문자)에 맞는 순번을 이름순으로 최대 limit개 반환한다. skip(id)이 true인 member는 건너뛴다.
+     * 3글자 이상은 username 어디에든 포함되면, 1~2글자는 username이 그 글자로 시작하면 맞는 것으로 본다.
+     */
+    int[] search(String lowerQuery, int limit, LongPredicate skip) {
+        return lowerQuery.length() < 3
+                ? searchPrefix(lowerQuery, limit, skip)
+                : searchContaining(lowerQuery, limit, skip);
+    }
+
+    private int[] searchPrefix(String lowerQuery, int limit, LongPredicate skip) {
+        //prefix가 같은 순번은 연속되어 있다.
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparePrefix(mid, lowerQuery) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        IntList found = new IntList();
+        for (int ord = low; ord < ids.length && found.size < limit && comparePrefix(ord, lowerQuery) == 0; ord++) {
+            if (!skip.test(ids[ord])) {
+                found.add(ord);
+            }
+        }
+        return found.toArray();
+    }
+
+    private int[] searchContaining(String lowerQuery, int limit, LongPredicate skip) {
+        int[] gramIndexes = new int[lowerQuery.length() - 2];
+        for (int at = 0; at < gramIndexes.length; at++) {
+            int g = Arrays.binarySearch(grams, gram(lowerQuery, at));
+            if (g < 0) {
+                return new int[0];
+            }
+            gramIndexes[at] = g;
+        }
+
+        //가장 짧은 목록부터 교집합
+        int shortest = 0;
+        for (int k = 1; k < gramIndexes.length; k++) {
+            if (postingLength(gramIndexes[k]) < postingLength(gramIndexes[shortest])) {
+                shortest = k;
+            }
+        }
+        IntList candidates = decode(gramIndexes[shortest]);
+        for (int k = 0; k < gramIndexes.length && candidates.size > 0; k++) {
+            if (k != shortest && gramIndexes[k] != gramIndexes[shortest]) {
+                retain(candidates, gramIndexes[k]);
+            }
+        }
+
+        //trigram이 모두 있어도 이어져 있지 않을 수 있으므로 실제로 확인한다.
+        IntList found = new IntList();
+        for (int k = 0; k < candidates.size && found.size < limit; k++) {
+            int ord = candidates.values[k];
+            if (!skip.test(ids[ord]) && contains(ord, lowerQuery)) {
+                found.add(ord);
+            }
+        }
+        return found.toArray();
+    }
+
+    private int postingLength(int g) {
+        return postingOffsets[g + 1] - postingOffsets[g];
+    }
+
+    private IntList decode(int g) {
+        IntList ordinals = new IntList();
+        int ordinal = -1;
+        for (int at = postingOffsets[g], end = postingOffsets[g + 1]; at < end; ) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[at++];
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            ordinal += delta;
+            ordinals.add(ordinal);
+        }
+        return ordinals;
+    }
+
+    //candidates(오름차순)에서 grams[g] 목록에 없는 순번을 뺀다.
+    private void retain(IntList candidates, int g) {
+        IntList other = decode(g);
+        int kept = 0;
+        int j = 0;
+        for (int k = 0; k < candidates.size; k++) {
+            int ordinal = candidates.values[k];
+            while (j < other.size && other.values[j] < ordinal) {
+                j++;
+            }
+            if (j < other.size && other.values[j] == ordinal) {
+                candidates.values[kept++] = ordinal;
+            }
+        }
+        candidates.size = kept;
+    }
+
+    //username(소문자)이 lowerQuery로 시작하면 0, 아니면 정렬 순서상 앞(-)/뒤(+)
+    private int comparePrefix(int ordinal, String lowerQuery) {
+        int from = nameOffsets[ordinal];
+        int length = nameOffsets[ordinal + 1] - from;
+        for (int k = 0; k < Math.min(length, lowerQuery.length()); k++) {
+            int c = Character.toLowerCase(names[from + k]) - lowerQuery.charAt(k);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return length >= lowerQuery.length() ? 0 : -1;
+    }
+
+    private boolean contains(int ordinal, String lowerQuery) {
+        int from = nameOffsets[ordinal];
+        int last = nameOffsets[ordinal + 1] - lowerQuery.length();
+        for (int start = from; start <= last; start++) {
+            int k = 0;
+            while (k < lowerQuery.length() && Character.toLowerCase(names[start + k]) == lowerQuery.charAt(k)) {
+                k++;
+            }
+            if (k == lowerQuery.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //String.toLowerCase는 locale/특수문자에 따라 길이가 바뀔 수 있어 글자 단위로 바꾼다.
+    static String lower(String value) {
+        char[] chars = value.toCharArray();
+        for (int k = 0; k < chars.length; k++) {
+            chars[k] = Character.toLowerCase(chars[k]);
+        }
+        return new String(chars);
+    }
+
+    private static long gram(String key, int at) {
+        return ((long) key.charAt(at) << 32) | ((long) key.charAt(at + 1) << 16) | key.charAt(at + 2);
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class ByteList {
+        byte[] values = new byte[1024];
+        int size;
+
+        void writeVarInt(int value) {
+            while (true) {
+                if (size + 1 > values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                if ((value & ~0x7f) == 0) {
+                    values[size++] = (byte) value;
+                    return;
+                }
+                values[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
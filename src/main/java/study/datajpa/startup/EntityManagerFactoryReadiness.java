@@ -0,0 +1,58 @@
+package study.datajpa.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.LivenessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * EntityManagerFactory를 백그라운드로 만드는 경우(fast-startup 프로필, bootstrap-mode: lazy)
+ * ApplicationReadyEvent 시점에 아직 만드는 중일 수 있으므로, 끝날 때까지 isReady()가 false다.
+ * 스프링 부트가 ApplicationReadyEvent 직후 ACCEPTING_TRAFFIC을 발행하므로 ReadinessState로 되돌려 둘 수 없어서
+ * ReadinessGateFilter가 이 값을 같이 확인한다.
+ * 생성에 실패하면 계속 false이고 LivenessState.BROKEN을 발행한다.
+ * 동기로 만드는 기본 설정에서는 항상 true다.
+ */
+@Slf4j
+@Component
+public class EntityManagerFactoryReadiness {
+
+    private final ObjectProvider<AbstractEntityManagerFactoryBean> entityManagerFactoryBeans;
+    private volatile boolean bootstrapping;
+
+    public EntityManagerFactoryReadiness(ObjectProvider<AbstractEntityManagerFactoryBean> entityManagerFactoryBeans) {
+        this.entityManagerFactoryBeans = entityManagerFactoryBeans;
+    }
+
+    public boolean isReady() {
+        return !bootstrapping;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady(ApplicationReadyEvent event) {
+        AbstractEntityManagerFactoryBean factoryBean = entityManagerFactoryBeans.getIfUnique();
+        if (factoryBean == null || factoryBean.getBootstrapExecutor() == null) {
+            return;
+        }
+
+        bootstrapping = true;
+        factoryBean.getBootstrapExecutor().execute(() -> {
+            try {
+                factoryBean.getNativeEntityManagerFactory(); //생성이 끝날 때까지 기다린다.
+            } catch (RuntimeException e) {
+                //계속 503만 반환하지 않도록 liveness를 BROKEN으로 바꿔 재시작되게 한다.
+                log.error("EntityManagerFactory 생성 실패, 요청을 받지 않고 liveness를 BROKEN으로 바꿉니다.", e);
+                AvailabilityChangeEvent.publish(event.getApplicationContext(), LivenessState.BROKEN);
+                return;
+            }
+            //0이면 메인 스레드가 이미 생성이 끝나기를 기다렸다는 뜻이다.
+            log.info("EntityManagerFactory ready {}ms after ApplicationReadyEvent",
+                    Math.max(0, System.currentTimeMillis() - event.getTimestamp()));
+            bootstrapping = false;
+        });
+    }
+}
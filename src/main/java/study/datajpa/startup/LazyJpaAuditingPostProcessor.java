@@ -0,0 +1,29 @@
+package study.datajpa.startup;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * fast-startup(bootstrap-mode: lazy)에서 @EnableJpaAuditing이 등록하는 빈을 처음 쓸 때 만들도록 바꾼다.
+ * jpaAuditingHandler는 싱글톤이라 기동 중에 만들어지고, 필요한 jpaMappingContext가 metamodel을 읽느라
+ * 메인 스레드가 백그라운드 EntityManagerFactory 생성이 끝날 때까지 기다리게 된다.
+ * AuditingEntityListener(Item)는 핸들러를 ObjectFactory로 받으므로 첫 저장 때 만들어진다.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.data.jpa.repositories.bootstrap-mode", havingValue = "lazy")
+public class LazyJpaAuditingPostProcessor implements BeanFactoryPostProcessor {
+
+    static final String[] BEAN_NAMES = {"jpaAuditingHandler", "jpaMappingContext"};
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        for (String beanName : BEAN_NAMES) {
+            if (beanFactory.containsBeanDefinition(beanName)) {
+                beanFactory.getBeanDefinition(beanName).setLazyInit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package study.datajpa.startup;
+
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 준비 전(ReadinessState.REFUSING_TRAFFIC, 또는 EntityManagerFactory를 아직 만드는 중)에는 요청을 바로 503으로 돌려보낸다.
+ * 톰캣은 ApplicationRunner(QueryWarmUp)나 백그라운드 EntityManagerFactory 생성이 끝나기 전에 요청을 받기 시작한다.
+ * /internal/**은 기동 상태 확인용으로 열어둔다.
+ */
+@Component
+public class ReadinessGateFilter extends OncePerRequestFilter {
+
+    private final ApplicationAvailability applicationAvailability;
+    private final EntityManagerFactoryReadiness entityManagerFactoryReadiness;
+
+    public ReadinessGateFilter(ApplicationAvailability applicationAvailability,
+                               EntityManagerFactoryReadiness entityManagerFactoryReadiness) {
+        this.applicationAvailability = applicationAvailability;
+        this.entityManagerFactoryReadiness = entityManagerFactoryReadiness;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/internal/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (applicationAvailability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC
+                && entityManagerFactoryReadiness.isReady()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+    }
+}
@@ -0,0 +1,164 @@
+package study.datajpa.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class MemberExporterTest {
+
+    //시퀀스가 발급하는 id와 겹치지 않도록 큰 값부터 사용
+    private static final long ID_BASE = 1_000_000_000L;
+
+    @Autowired MemberExporter memberExporter;
+    @Autowired TeamRepository teamRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired EntityManager em;
+
+    //한 트랜잭션에서 수백만 건을 지우면 undo log가 너무 커지므로 나눠서 삭제
+    @AfterEach
+    public void cleanUp() {
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> em.createNativeQuery(
+                            "delete from member where member_id > " + ID_BASE + " limit 100000")
+                    .executeUpdate());
+        } while (deleted > 0);
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Team t where t.name = 'exportTeam'").executeUpdate());
+    }
+
+    @Test
+    public void exportCsv() throws Exception {
+        //given
+        insertMembers(3);
+
+        //when
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        memberExporter.export(ExportFormat.CSV, out);
+
+        //then
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertThat(csv).startsWith("id,username,teamName\n");
+        assertThat(csv).contains((ID_BASE + 1) + ",export1,exportTeam\n");
+    }
+
+    @Test
+    public void exportNdjson() throws Exception {
+        //given
+        insertMembers(10_000);
+
+        //when
+        HeapSamplingOutputStream out = new HeapSamplingOutputStream(Long.MAX_VALUE);
+        long exported = memberExporter.export(ExportFormat.NDJSON, out);
+
+        //then
+        assertThat(exported).isGreaterThanOrEqualTo(10_000);
+        assertThat(out.lines).isEqualTo(exported);
+    }
+
+    //오래 걸리므로 건수를 줄 때만 실행 (./gradlew test -Pexport.rows=2000000)
+    @Test
+    @EnabledIfSystemProperty(named = "export.rows", matches = "\\d+")
+    public void exportNdjsonWithBoundedMemory() throws Exception {
+        //given
+        int rows = Integer.getInteger("export.rows");
+        insertMembers(rows);
+
+        //when (출력은 버리고, 일정 크기마다 마지막 GC 직후의 힙 사용량을 기록)
+        HeapSamplingOutputStream out = new HeapSamplingOutputStream(4 * 1024 * 1024);
+        long exported = memberExporter.export(ExportFormat.NDJSON, out);
+
+        //then
+        System.out.println("exported = " + exported + ", bytes = " + out.bytes
+                + ", heap first = " + out.firstSample / 1024 / 1024 + "MB, heap max = " + out.maxSample / 1024 / 1024 + "MB");
+        assertThat(exported).isGreaterThanOrEqualTo(rows);
+        assertThat(out.maxSample - out.firstSample).isLessThan(64L * 1024 * 1024);
+    }
+
+    //team 하나에 member rows건을 insert ... select 한 문장으로 생성
+    private void insertMembers(int rows) {
+        Team team = teamRepository.save(new Team("exportTeam"));
+        transactionTemplate.executeWithoutResult(status -> em.createNativeQuery(
+                        "insert into member (member_id, username, age, team_id)" +
+                        " select x + " + ID_BASE + ", 'export' || x, mod(x, 100), " + team.getId() +
+                        " from system_range(1, " + rows + ")")
+                .executeUpdate());
+    }
+
+    static class HeapSamplingOutputStream extends OutputStream {
+
+        private final long sampleEvery;
+        private long bytes;
+        private long lines;
+        private long nextSample;
+        private long firstSample = -1;
+        private long maxSample;
+
+        HeapSamplingOutputStream(long sampleEvery) {
+            this.sampleEvery = sampleEvery;
+            this.nextSample = sampleEvery;
+        }
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                lines++;
+            }
+            count(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    lines++;
+                }
+            }
+            count(len);
+        }
+
+        private void count(int len) {
+            bytes += len;
+            if (bytes >= nextSample) {
+                nextSample += sampleEvery;
+                long used = usedAfterLastGc();
+                if (used <= 0) { //아직 GC가 한 번도 없었음
+                    return;
+                }
+                if (firstSample < 0) {
+                    firstSample = used;
+                }
+                maxSample = Math.max(maxSample, used);
+            }
+        }
+
+        //System.gc()로 멈추지 않고, JVM이 알아서 한 GC 직후의 힙 사용량(살아남은 객체)을 읽는다.
+        private static long usedAfterLastGc() {
+            long used = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                MemoryUsage usage = pool.getCollectionUsage();
+                if (pool.getType() == MemoryType.HEAP && usage != null) {
+                    used += usage.getUsed();
+                }
+            }
+            return used;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package study.datajpa.controller;
+
+import com.p6spy.engine.common.StatementInformation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.datajpa.monitoring.SqlCountScope;
+import study.datajpa.monitoring.SqlStatementCounter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MemberQueryExecutorTest {
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    final SqlStatementCounter sqlStatementCounter = new SqlStatementCounter();
+    MemberQueryExecutor executor;
+
+    @AfterEach
+    public void shutdown() {
+        release.countDown();
+        executor.destroy();
+    }
+
+    @Test
+    public void rejectWhenQueueIsFull() throws Exception {
+        //given 스레드 1개 + 큐 1칸
+        executor = new MemberQueryExecutor(transactionManager, sqlStatementCounter, 1, 1, 5000);
+        CompletableFuture<String> running = executor.readOnly(this::blocked);
+        CompletableFuture<String> queued = executor.readOnly(this::blocked);
+
+        //when then 기다리지 않고 바로 거절
+        assertThatThrownBy(() -> executor.readOnly(this::blocked)).isInstanceOf(RejectedExecutionException.class);
+        assertThat(executor.getRejectedCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(1, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(queued.get(1, TimeUnit.SECONDS)).isEqualTo("done");
+    }
+
+    @Test
+    public void timeout() {
+        //given
+        executor = new MemberQueryExecutor(transactionManager, sqlStatementCounter, 1, 1, 50);
+
+        //when
+        CompletableFuture<String> slow = executor.readOnly(this::blocked);
+
+        //then
+        assertThatThrownBy(() -> slow.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    public void cancelQueuedTaskOnTimeout() throws Exception {
+        //given 스레드 1개가 막혀 있어서 두 번째 작업은 큐에서 기다린다.
+        executor = new MemberQueryExecutor(transactionManager, sqlStatementCounter, 1, 1, 50);
+        AtomicBoolean ran = new AtomicBoolean();
+        executor.readOnly(this::blocked);
+        CompletableFuture<String> queued = executor.readOnly(() -> {
+            ran.set(true);
+            return "late";
+        });
+
+        //when
+        assertThatThrownBy(() -> queued.get(1, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+        release.countDown();
+
+        //then 큐에서 빠지고 나중에도 실행되지 않는다.
+        assertThat(executor.getQueueSize()).isEqualTo(0);
+        executor.readOnly(() -> "next").get(1, TimeUnit.SECONDS);
+        assertThat(ran).isFalse();
+    }
+
+    @Test
+    public void queryTimeout() throws Exception {
+        //given
+        executor = new MemberQueryExecutor(transactionManager, sqlStatementCounter, 1, 1, 1500);
+
+        //when
+        executor.readOnly(() -> "done").get(1, TimeUnit.SECONDS);
+
+        //then 실행 중인 쿼리도 timeout(올림해서 2초)이 지나면 JDBC에서 끊긴다.
+        verify(transactionManager).getTransaction(argThat(definition ->
+                definition != null && definition.isReadOnly() && definition.getTimeout() == 2));
+    }
+
+    @Test
+    public void countSqlOnWorkerThread() throws Exception {
+        //given 요청 스레드의 스코프 (SqlCountFilter)
+        executor = new MemberQueryExecutor(transactionManager, sqlStatementCounter, 1, 1, 5000);
+        SqlCountScope request = sqlStatementCounter.open("GET /members");
+        CompletableFuture<String> scopeOnWorker;
+        try {
+            //when
+            scopeOnWorker = executor.readOnly(sqlStatementCounter::currentScopeName);
+        } finally {
+            request.close();
+        }
+
+        //then 작업 스레드에도 같은 이름의 스코프가 열려 있고, 끝나면 닫힌다.
+        assertThat(scopeOnWorker.get(1, TimeUnit.SECONDS)).isEqualTo("GET /members");
+        assertThat(executor.readOnly(sqlStatementCounter::currentScopeName).get(1, TimeUnit.SECONDS)).isNull();
+    }
+
+    @Test
+    public void keepQueryExceptionWhenNPlusOneFails() {
+        //given N+1이면 스코프를 닫을 때 예외 (테스트 설정)
+        ReflectionTestUtils.setField(sqlStatementCounter, "threshold", 3);
+        ReflectionTestUtils.setField(sqlStatementCounter, "action", SqlStatementCounter.NPlusOneAction.FAIL);
+        executor = new MemberQueryExecutor(transactionManager, sqlStatementCounter, 1, 1, 5000);
+        StatementInformation select = mock(StatementInformation.class);
+        when(select.getSql()).thenReturn("select * from team where team_id = 1");
+        SqlCountScope request = sqlStatementCounter.open("GET /members");
+        CompletableFuture<String> failed;
+        try {
+            //when select 3번 후 쿼리 실패
+            failed = executor.readOnly(() -> {
+                for (int i = 0; i < 3; i++) {
+                    sqlStatementCounter.onAfterAnyExecute(select, 0, null);
+                }
+                throw new IllegalArgumentException("query failed");
+            });
+        } finally {
+            request.close();
+        }
+
+        //then 쿼리 예외가 그대로 전달되고 N+1 예외는 suppressed로 붙는다.
+        assertThatThrownBy(() -> failed.get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalArgumentException.class)
+                .satisfies(e -> assertThat(e.getCause().getSuppressed())
+                        .singleElement().asString().contains("N+1 suspected"));
+    }
+
+    private String blocked() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
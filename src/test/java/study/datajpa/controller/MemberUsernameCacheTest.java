@@ -0,0 +1,147 @@
+package study.datajpa.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.datajpa.monitoring.SqlStatementCounter;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MemberUsernameCacheTest {
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger loads = new AtomicInteger();
+    final MemberRepository memberRepository = mock(MemberRepository.class);
+    final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    final MemberQueryExecutor executor = new MemberQueryExecutor(transactionManager, mock(SqlStatementCounter.class), 4, 100, 5000);
+
+    @AfterEach
+    public void shutdown() {
+        release.countDown();
+        executor.destroy();
+    }
+
+    @Test
+    public void coalesceConcurrentMisses() throws Exception {
+        //given 조회가 끝나지 않은 상태에서
+        when(memberRepository.findUsernameById(anyLong())).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            release.await(1, TimeUnit.SECONDS);
+            return Optional.of("member" + invocation.getArgument(0));
+        });
+        MemberUsernameCache cache = new MemberUsernameCache(memberRepository, executor, 100, 60, 1000);
+
+        //when 같은 id 100번
+        List<CompletableFuture<String>> futures = IntStream.range(0, 100)
+                .mapToObj(i -> cache.get(1L))
+                .collect(Collectors.toList());
+        release.countDown();
+
+        //then DB 조회는 한 번
+        for (CompletableFuture<String> future : futures) {
+            assertThat(future.get(1, TimeUnit.SECONDS)).isEqualTo("member1");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.stats().getCoalescedCount()).isEqualTo(99);
+
+        //이후는 캐시
+        assertThat(cache.get(1L).isDone()).isTrue();
+        assertThat(cache.stats().getHitCount()).isEqualTo(1);
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidateDuringLoadDoesNotCacheOldValue() throws Exception {
+        //given
+        when(memberRepository.findUsernameById(1L)).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            release.await(1, TimeUnit.SECONDS);
+            return Optional.of("old");
+        });
+        MemberUsernameCache cache = new MemberUsernameCache(memberRepository, executor, 100, 60, 1000);
+        CompletableFuture<String> loading = cache.get(1L);
+
+        //when 조회 중에 변경
+        cache.invalidate(1L);
+        release.countDown();
+
+        //then 기다리던 요청은 받지만 캐시에는 남지 않는다.
+        assertThat(loading.get(1, TimeUnit.SECONDS)).isEqualTo("old");
+        assertThat(cache.stats().getSize()).isEqualTo(0);
+        cache.get(1L).get(1, TimeUnit.SECONDS);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void reloadAfterInvalidationReadsPrimary() throws Exception {
+        //given
+        when(memberRepository.findUsernameById(1L)).thenReturn(Optional.of("member1"));
+        MemberUsernameCache cache = new MemberUsernameCache(memberRepository, executor, 100, 60, 200);
+        cache.get(1L).get(1, TimeUnit.SECONDS);
+
+        //when 변경 커밋 직후 다시 조회
+        cache.invalidate(1L);
+        cache.get(1L).get(1, TimeUnit.SECONDS);
+
+        //then replica는 아직 이전 값일 수 있으므로 primary(readOnly가 아닌 트랜잭션)
+        verify(transactionManager, times(1)).getTransaction(argThat(definition -> definition != null && !definition.isReadOnly()));
+
+        //지연 허용 시간이 지난 뒤 무효화된 것은 다시 replica
+        cache.invalidate(1L);
+        Thread.sleep(250);
+        cache.get(1L).get(1, TimeUnit.SECONDS);
+        verify(transactionManager, times(1)).getTransaction(argThat(definition -> definition != null && !definition.isReadOnly()));
+        verify(transactionManager, times(2)).getTransaction(argThat(definition -> definition != null && definition.isReadOnly()));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        //given
+        when(memberRepository.findUsernameById(anyLong())).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            return Optional.of("member" + invocation.getArgument(0));
+        });
+        MemberUsernameCache cache = new MemberUsernameCache(memberRepository, executor, 2, 60, 1000);
+        cache.get(1L).get(1, TimeUnit.SECONDS);
+        cache.get(2L).get(1, TimeUnit.SECONDS);
+        cache.get(1L).get(1, TimeUnit.SECONDS); //1이 최근
+
+        //when
+        cache.get(3L).get(1, TimeUnit.SECONDS);
+
+        //then 2가 밀려남
+        assertThat(cache.stats().getSize()).isEqualTo(2);
+        cache.get(1L).get(1, TimeUnit.SECONDS);
+        assertThat(loads.get()).isEqualTo(3);
+        cache.get(2L).get(1, TimeUnit.SECONDS);
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void missingMemberIsNotCached() {
+        when(memberRepository.findUsernameById(anyLong())).thenReturn(Optional.empty());
+        MemberUsernameCache cache = new MemberUsernameCache(memberRepository, executor, 100, 60, 1000);
+
+        assertThatThrownBy(() -> cache.get(1L).get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class);
+        assertThat(cache.stats().getSize()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,165 @@
+package study.datajpa.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.controller.MemberQueryExecutor;
+import study.datajpa.dto.DataSourceRouteStats;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//H2 두 개로 primary/replica를 흉내낸다. 복제는 SCRIPT/RUNSCRIPT로 직접 한다.
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "datajpa.datasource.replica.url=" + ReplicaRoutingTest.REPLICA_URL,
+        "datajpa.datasource.replica.username=sa",
+        "datajpa.datasource.replica.lag-tolerance-millis=" + ReplicaRoutingTest.LAG_TOLERANCE_MILLIS
+})
+class ReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    static final long LAG_TOLERANCE_MILLIS = 300;
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberQueryExecutor memberQueryExecutor;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired ReplicaRouting replicaRouting;
+    @Autowired MutableClock clock;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        replicate(); //스키마
+        clock.advance(LAG_TOLERANCE_MILLIS); //이전 테스트의 쓰기 영향 없음
+    }
+
+    @Test
+    public void readOnlyGoesToReplica() throws Exception {
+        //given
+        DataSourceRouteStats before = replicaRouting.stats();
+        memberRepository.save(new Member("routing", 10)); //primary
+
+        //when then 쓰기 커밋 직후에는 primary에서 읽는다.
+        assertThat(memberRepository.findReadOnlyByUsername("routing")).isNotNull();
+
+        //지연 허용 시간이 지나면 replica (아직 복제 전)
+        clock.advance(LAG_TOLERANCE_MILLIS);
+        assertThat(memberRepository.findReadOnlyByUsername("routing")).isNull();
+
+        replicate();
+        assertThat(memberRepository.findReadOnlyByUsername("routing")).isNotNull();
+
+        DataSourceRouteStats after = replicaRouting.stats();
+        assertThat(after.getReplicaConnections() - before.getReplicaConnections()).isEqualTo(2);
+        assertThat(after.getLagFallbacks() - before.getLagFallbacks()).isEqualTo(1);
+    }
+
+    @Test
+    public void readAfterWriteOnQueryExecutor() throws Exception {
+        //given
+        memberRepository.save(new Member("routing-async", 10)); //primary
+
+        //when 쓰기 직후 작업 스레드의 읽기 (호출자의 Token을 넘겨받음)
+        Member found = memberQueryExecutor.readOnly(() -> memberRepository.findReadOnlyByUsername("routing-async"))
+                .get(1, TimeUnit.SECONDS);
+
+        //then 아직 복제 전이지만 primary에서 읽는다.
+        assertThat(found).isNotNull();
+    }
+
+    @Test
+    public void writeByAnotherCallerKeepsReplica() throws Exception {
+        //given 다른 호출자(스레드)의 쓰기
+        CompletableFuture.runAsync(() -> memberRepository.save(new Member("routing-other", 10))).get(1, TimeUnit.SECONDS);
+
+        //when then 이 호출자는 기다리지 않고 replica에서 읽는다. (아직 복제 전)
+        assertThat(memberRepository.findReadOnlyByUsername("routing-other")).isNull();
+    }
+
+    @Test
+    public void transactionWithoutWritesKeepsReplica() {
+        //given 복제 전인 member
+        memberRepository.save(new Member("routing-read", 10));
+        clock.advance(LAG_TOLERANCE_MILLIS);
+
+        //when readOnly가 아니지만 조회만 한 트랜잭션
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                assertThat(memberRepository.findReadOnlyByUsername("routing-read")).isNotNull()); //primary
+
+        //then 커밋 시각을 남기지 않으므로 다음 읽기는 replica
+        assertThat(memberRepository.findReadOnlyByUsername("routing-read")).isNull();
+    }
+
+    private void replicate() throws Exception {
+        Path script = Files.createTempFile("replica", ".sql");
+        try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+             Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "")) {
+            execute(primary, "script to '" + script + "'");
+            execute(replica, "drop all objects");
+            execute(replica, "runscript from '" + script + "'");
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    @TestConfiguration
+    static class ClockConfig {
+
+        @Bean
+        MutableClock clock() {
+            return new MutableClock();
+        }
+    }
+
+    //복제 지연 시간을 sleep 없이 넘기기 위한 시계
+    static class MutableClock extends Clock {
+
+        private volatile Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(long millis) {
+            instant = instant.plusMillis(millis);
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
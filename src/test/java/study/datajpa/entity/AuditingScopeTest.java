@@ -0,0 +1,67 @@
+package study.datajpa.entity;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class AuditingScopeTest {
+
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Test
+    public void timestampOutsideFlushIsRefreshed() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            //given persist 시점(@PrePersist)의 시각
+            LocalDateTime first = AuditingScope.now();
+
+            //when MAX_AGE보다 오래 지난 뒤
+            sleep(TimeUnit.NANOSECONDS.toMillis(AuditingScope.MAX_AGE_NANOS) * 2);
+
+            //then 예전 시각을 재사용하지 않는다.
+            assertThat(AuditingScope.now()).isAfter(first);
+        });
+    }
+
+    @Test
+    public void requiresNewUsesItsOwnValues() {
+        TransactionTemplate inner = new TransactionTemplate(transactionManager);
+        inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            //given 바깥 트랜잭션이 flush 중
+            assertThat(AuditingScope.auditor(() -> "outer")).isEqualTo("outer");
+            AuditingScope.flushStarted();
+            LocalDateTime outerNow = AuditingScope.now();
+
+            //when 안쪽 트랜잭션이 자기 값을 쓰고 flush를 끝낸다.
+            inner.executeWithoutResult(innerStatus -> {
+                assertThat(AuditingScope.auditor(() -> "inner")).isEqualTo("inner");
+                AuditingScope.flushStarted();
+                AuditingScope.now();
+                AuditingScope.flushed();
+            });
+
+            //then 바깥 트랜잭션의 작성자와 flush 시각은 그대로
+            assertThat(AuditingScope.auditor(() -> "other")).isEqualTo("outer");
+            assertThat(AuditingScope.now()).isSameAs(outerNow);
+            AuditingScope.flushed();
+        });
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package study.datajpa.entity;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.controller.MemberUsernameCache;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.UsernameIndex;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@RecordApplicationEvents
+class MemberChangeListenerTest {
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberUsernameCache memberUsernameCache;
+    @Autowired UsernameIndex usernameIndex;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired EntityManager em;
+    @Autowired ApplicationEvents events;
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'near%'").executeUpdate());
+        usernameIndex.rebuild(); //bulk delete는 이벤트가 없으므로 인덱스를 DB에서 다시 읽는다.
+    }
+
+    @Test
+    public void evictNearCacheAfterCommit() throws Exception {
+        //given
+        Long id = memberRepository.save(new Member("nearBefore", 10)).getId();
+        assertThat(memberUsernameCache.get(id).get(1, TimeUnit.SECONDS)).isEqualTo("nearBefore");
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            em.find(Member.class, id).changeUserName("nearAfter");
+            em.flush(); //이벤트 발행
+            //커밋 전에는 그대로
+            assertThat(memberUsernameCache.get(id).join()).isEqualTo("nearBefore");
+        });
+
+        //then
+        assertThat(memberUsernameCache.get(id).get(1, TimeUnit.SECONDS)).isEqualTo("nearAfter");
+    }
+
+    @Test
+    public void indexUsernameAfterCommit() throws Exception {
+        //when
+        Long id = memberRepository.save(new Member("nearIndexed", 10)).getId();
+        transactionTemplate.executeWithoutResult(status -> {
+            em.find(Member.class, id).changeUserName("nearRenamed");
+            em.flush();
+            //커밋 전에는 이전 이름
+            assertThat(usernameIndex.search("nearindexed", 10)).extracting(MemberDto::getId).containsExactly(id);
+        });
+
+        //then
+        assertThat(usernameIndex.search("nearindexed", 10)).isEmpty();
+        assertThat(usernameIndex.search("NEARRENAMED", 10).stream().map(MemberDto::getUsername).collect(Collectors.toList()))
+                .containsExactly("nearRenamed");
+    }
+
+    @Test
+    public void bulkUpdateClearsNearCacheAfterCommit() throws Exception {
+        //given
+        Long id = memberRepository.save(new Member("nearBulk", 10)).getId();
+        assertThat(memberUsernameCache.get(id).get(1, TimeUnit.SECONDS)).isEqualTo("nearBulk");
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.bulkAgePlus(10);
+            memberRepository.bulkAgePlus(10);
+            //커밋 전에는 그대로
+            assertThat(memberUsernameCache.stats().getSize()).isPositive();
+        });
+
+        //then 트랜잭션당 bulk 이벤트 한 번, 커밋 후 전부 비운다.
+        assertThat(events.stream(MembersBulkChangedEvent.class)).hasSize(1);
+        assertThat(memberUsernameCache.stats().getSize()).isZero();
+    }
+}
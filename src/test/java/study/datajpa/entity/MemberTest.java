@@ -12,6 +12,8 @@ import javax.persistence.PersistenceContext;
 
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 
 @SpringBootTest
 @Transactional
@@ -72,4 +74,27 @@ class MemberTest {
         System.out.println("getCreateBy = " + findMember.getCreateBy());
         System.out.println("getLastModifiedDate = " + findMember.getLastModifiedDate());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void auditingValuesPerTransaction() throws Exception {
+        //given
+        Member member1 = new Member("audit1", 10);
+        Member member2 = new Member("audit2", 10);
+
+        //when
+        em.persist(member1);
+        em.persist(member2);
+
+        //then 작성자는 트랜잭션당, 시각은 flush 사이에 한 번만 구한다.
+        assertThat(member1.getCreateBy()).isNotNull().isEqualTo(member2.getCreateBy());
+        assertThat(member1.getCreateDate()).isNotNull().isSameAs(member2.getCreateDate());
+
+        em.flush();
+        Thread.sleep(10);
+        member1.setUsername("audit11");
+        em.flush(); //@PreUpdate는 flush 이후 새 시각
+
+        assertThat(member1.getLastModifiedDate()).isAfter(member1.getCreateDate());
+        assertThat(member1.getUpdateBy()).isEqualTo(member1.getCreateBy());
+    }
+}
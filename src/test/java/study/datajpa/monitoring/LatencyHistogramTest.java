@@ -0,0 +1,63 @@
+package study.datajpa.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int i = 1; i < LatencyHistogram.index((1L << 40) - 1); i++) {
+            assertThat(LatencyHistogram.index(LatencyHistogram.highestValue(i - 1) + 1)).isEqualTo(i);
+            assertThat(LatencyHistogram.index(LatencyHistogram.highestValue(i))).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        //given 1us ~ 1000us 균등
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        //when
+        long[] snapshot = histogram.snapshot(false);
+
+        //then 상대 오차 6% 이내
+        assertThat((double) LatencyHistogram.percentile(snapshot, 0.5)).isCloseTo(500_000, within(30_000.0));
+        assertThat((double) LatencyHistogram.percentile(snapshot, 0.99)).isCloseTo(990_000, within(60_000.0));
+        assertThat((double) LatencyHistogram.percentile(snapshot, 0.999)).isCloseTo(999_000, within(60_000.0));
+    }
+
+    @Test
+    public void resetSnapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10); //16 미만은 값 그대로
+
+        assertThat(LatencyHistogram.percentile(histogram.snapshot(true), 0.5)).isEqualTo(10);
+        assertThat(LatencyHistogram.percentile(histogram.snapshot(false), 0.5)).isEqualTo(0);
+    }
+
+    @Test
+    public void recordDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        LatencyHistogram histogram = new LatencyHistogram();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 100_000; i++) { //JIT warm up
+            histogram.record(i * 997L);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i * 997L);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(allocated).isLessThan(1024); //getThreadAllocatedBytes 자체 오차
+    }
+}
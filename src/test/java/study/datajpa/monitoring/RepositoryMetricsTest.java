@@ -0,0 +1,134 @@
+package study.datajpa.monitoring;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.RepositoryMethodStats;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberJpaRepository;
+import study.datajpa.repository.MemberRepository;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class RepositoryMetricsTest {
+
+    @Autowired RepositoryMetrics repositoryMetrics;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberJpaRepository memberJpaRepository;
+
+    @Test
+    public void recordRepositoryMethods() {
+        //given
+        memberRepository.save(new Member("metrics", 10));
+        memberRepository.save(new Member("metrics", 20));
+        repositoryMetrics.readAndReset();
+
+        //when 파생 쿼리, @Query, @Repository 클래스
+        memberRepository.findListByUsername("metrics");
+        memberRepository.findListByUsername("metrics");
+        memberRepository.findUser("metrics", 10);
+        memberJpaRepository.findByUsernameAndAgeGreaterThen("metrics", 15);
+        repositoryMetrics.runUnrecorded(() -> memberRepository.findListByUsername("metrics")); //warm-up 등
+
+        //then
+        List<RepositoryMethodStats> stats = repositoryMetrics.readAndReset();
+        RepositoryMethodStats derived = find(stats, "MemberRepository", "findListByUsername(String)");
+        assertThat(derived.getCalls()).isEqualTo(2); //runUnrecorded 호출은 제외
+        assertThat(derived.getRows()).isEqualTo(4);
+        assertThat(derived.getStatements()).isEqualTo(3); //첫 호출의 auto flush(batch insert) + select 2번
+        assertThat(derived.getP50Micros()).isPositive();
+        assertThat(derived.getP999Micros()).isGreaterThanOrEqualTo(derived.getP50Micros());
+
+        assertThat(find(stats, "MemberRepository", "findUser(String, int)").getRows()).isEqualTo(1);
+        assertThat(find(stats, "MemberJpaRepository", "findByUsernameAndAgeGreaterThen(String, int)").getRows()).isEqualTo(1);
+
+        //reset 이후는 비어 있다.
+        assertThat(repositoryMetrics.read()).isEmpty();
+    }
+
+    @Test
+    public void interceptorDoesNotAllocate() throws Throwable {
+        //given 리포지토리 프록시에 붙은 interceptor, proceed는 DB를 거치지 않고 같은 결과를 돌려준다.
+        MethodInterceptor interceptor = Arrays.stream(((Advised) memberJpaRepository).getAdvisors())
+                .map(Advisor::getAdvice)
+                .filter(advice -> advice.getClass().getEnclosingClass() == RepositoryMetrics.class)
+                .map(MethodInterceptor.class::cast)
+                .findFirst().orElseThrow();
+        MethodInvocation invocation = new FixedInvocation(
+                MemberJpaRepository.class.getMethod("findAll"), List.of(new Member("metrics", 10)));
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 100_000; i++) { //메소드별 카운터 생성, JIT warm up
+            interceptor.invoke(invocation);
+        }
+
+        //when
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            interceptor.invoke(invocation);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        //then
+        assertThat(allocated).isLessThan(1024); //getThreadAllocatedBytes 자체 오차
+        repositoryMetrics.readAndReset();
+    }
+
+    private RepositoryMethodStats find(List<RepositoryMethodStats> stats, String repository, String method) {
+        return stats.stream()
+                .filter(s -> s.getRepository().equals(repository) && s.getMethod().equals(method))
+                .findFirst().orElseThrow();
+    }
+
+    private static class FixedInvocation implements MethodInvocation {
+
+        private static final Object[] NO_ARGUMENTS = {};
+
+        private final Method method;
+        private final Object result;
+
+        FixedInvocation(Method method, Object result) {
+            this.method = method;
+            this.result = result;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Object[] getArguments() {
+            return NO_ARGUMENTS;
+        }
+
+        @Override
+        public Object proceed() {
+            return result;
+        }
+
+        @Override
+        public Object getThis() {
+            return null;
+        }
+
+        @Override
+        public AccessibleObject getStaticPart() {
+            return method;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.IngestResult;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberChangedEvent;
+import study.datajpa.entity.MembersBulkChangedEvent;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@RecordApplicationEvents
+class BulkIngestRepositoryTest {
+
+    @Autowired BulkIngestRepository bulkIngestRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired EntityManager em;
+    @Autowired UsernameIndex usernameIndex;
+    @Autowired ApplicationEvents events;
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'bulk%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'bulk%'").executeUpdate();
+        });
+        usernameIndex.rebuild(); //bulk delete는 이벤트가 없으므로 인덱스를 DB에서 다시 읽는다.
+    }
+
+    @Test
+    public void saveMembersWithNewTeams() {
+        //given
+        Team teamA = new Team("bulkTeamA");
+        Team teamB = new Team("bulkTeamB");
+        List<Member> members = IntStream.range(0, 250)
+                .mapToObj(i -> new Member("bulk" + i, i, i % 2 == 0 ? teamA : teamB))
+                .collect(Collectors.toList());
+
+        //when (chunk 100 -> flush/clear 3번)
+        IngestResult result = bulkIngestRepository.saveMembers(members.stream(), 100);
+
+        //then
+        assertThat(result.getRows()).isEqualTo(250);
+        Long joined = transactionTemplate.execute(status -> em.createQuery(
+                        "select count(m) from Member m join m.team t where m.username like 'bulk%' and t.name like 'bulkTeam%'", Long.class)
+                .getSingleResult());
+        assertThat(joined).isEqualTo(250);
+    }
+
+    @Test
+    public void saveMembersPublishesOneBulkEvent() {
+        //when
+        bulkIngestRepository.saveMembers(IntStream.range(0, 250).mapToObj(i -> new Member("bulkIndexed" + i, i)), 100);
+
+        //then 건별 이벤트 없이 bulk 이벤트 한 번 -> 커밋 후 인덱스를 다시 읽는다.
+        assertThat(events.stream(MemberChangedEvent.class)).isEmpty();
+        assertThat(events.stream(MembersBulkChangedEvent.class)).hasSize(1);
+        usernameIndex.awaitBuilds();
+        assertThat(usernameIndex.search("bulkindexed", 300)).hasSize(250);
+    }
+}
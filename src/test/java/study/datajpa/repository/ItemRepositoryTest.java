@@ -3,8 +3,12 @@ package study.datajpa.repository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import study.datajpa.dto.UpsertResult;
 import study.datajpa.entity.Item;
 
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -23,4 +27,18 @@ class ItemRepositoryTest {
         Item item = new Item("hello");
         Item save = itemRepository.save(item);
     }
+
+    @Test
+    public void upsertAll() {
+        //when
+        UpsertResult first = itemRepository.upsertAll(Arrays.asList("upsert1", "upsert2"));
+        UpsertResult second = itemRepository.upsertAll(Arrays.asList("upsert2", "upsert3", "upsert3"));
+
+        //then
+        assertThat(first.getInserted()).isEqualTo(2);
+        assertThat(first.getUpdated()).isEqualTo(0);
+        assertThat(second.getInserted()).isEqualTo(1);
+        assertThat(second.getUpdated()).isEqualTo(1);
+        assertThat(itemRepository.findById("upsert3")).isPresent();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.BulkUpdateReport;
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class MemberBulkUpdateExecutorTest {
+
+    @Autowired MemberBulkUpdateExecutor bulkUpdateExecutor;
+    @Autowired BulkIngestRepository bulkIngestRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired EntityManager em;
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'range%'").executeUpdate();
+            em.createQuery("delete from BulkUpdateChunk c where c.jobId like 'range%'").executeUpdate();
+        });
+    }
+
+    @Test
+    public void bulkAgePlusByRange() {
+        //given
+        bulkIngestRepository.saveMembers(IntStream.range(0, 50)
+                .mapToObj(i -> new Member("range" + i, 2000 + i))
+                .collect(Collectors.toList()));
+
+        //when
+        BulkUpdateReport report = bulkUpdateExecutor.bulkAgePlus("range-job", 2000, 10);
+
+        //then
+        assertThat(report.isSucceeded()).isTrue();
+        assertThat(report.getUpdatedRows()).isEqualTo(50);
+        assertThat(report.getSkippedRanges()).isEqualTo(0);
+        assertThat(report.getCompletedRanges()).isEqualTo(report.getTotalRanges());
+        assertThat(ages()).containsExactlyElementsOf(IntStream.range(0, 50).mapToObj(i -> 2001 + i).collect(Collectors.toList()));
+
+        //같은 job 재실행 -> 이미 처리된 구간은 건너뛴다
+        BulkUpdateReport rerun = bulkUpdateExecutor.bulkAgePlus("range-job", 2000, 10);
+        assertThat(rerun.getUpdatedRows()).isEqualTo(0);
+        assertThat(rerun.getSkippedRanges()).isEqualTo(rerun.getTotalRanges());
+        assertThat(ages()).containsExactlyElementsOf(IntStream.range(0, 50).mapToObj(i -> 2001 + i).collect(Collectors.toList()));
+
+        //다른 rangeSize로 이어서 실행하면 구간이 어긋나므로 거부
+        assertThatThrownBy(() -> bulkUpdateExecutor.bulkAgePlus("range-job", 2000, 7))
+                .isInstanceOf(IllegalStateException.class);
+        //다른 age로 이어서 실행해도 대상이 달라지므로 거부
+        assertThatThrownBy(() -> bulkUpdateExecutor.bulkAgePlus("range-job", 2010, 10))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void commitRangesIndependentlyOfCaller() {
+        //given 스레드 4개 + 큐 8칸보다 구간이 많아서 일부는 호출 스레드에서 실행된다.
+        bulkIngestRepository.saveMembers(IntStream.range(0, 50)
+                .mapToObj(i -> new Member("range" + i, 2000 + i))
+                .collect(Collectors.toList()));
+
+        //when 바깥 트랜잭션이 롤백돼도
+        transactionTemplate.executeWithoutResult(status -> {
+            bulkUpdateExecutor.bulkAgePlus("range-outer", 2000, 2);
+            status.setRollbackOnly();
+        });
+
+        //then 구간 update와 완료 기록은 남는다.
+        assertThat(ages()).containsExactlyElementsOf(IntStream.range(0, 50).mapToObj(i -> 2001 + i).collect(Collectors.toList()));
+        BulkUpdateReport rerun = bulkUpdateExecutor.bulkAgePlus("range-outer", 2000, 2);
+        assertThat(rerun.getUpdatedRows()).isEqualTo(0);
+        assertThat(rerun.getSkippedRanges()).isEqualTo(rerun.getTotalRanges());
+    }
+
+    private List<Integer> ages() {
+        return transactionTemplate.execute(status -> em.createQuery(
+                        "select m.age from Member m where m.username like 'range%' order by m.id", Integer.class)
+                .getResultList());
+    }
+}
@@ -1,22 +1,38 @@
 package study.datajpa.repository;
 
 import org.assertj.core.api.Assertions;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.CursorPage;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.entity.Member;
 import study.datajpa.entity.Team;
+import study.datajpa.monitoring.SqlCountScope;
+import study.datajpa.monitoring.SqlStatementCounter;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.withinPercentage;
 
 @SpringBootTest
 @Transactional
@@ -25,6 +41,9 @@ class MemberRepositoryTest {
 
     @Autowired MemberRepository memberRepository;
     @Autowired TeamRepository teamRepository;
+    @Autowired MemberJpaRepository memberJpaRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired SqlStatementCounter sqlStatementCounter;
     @Autowired EntityManager em;
 
     @Test
@@ -210,6 +229,85 @@ class MemberRepositoryTest {
         assertThat(page.hasNext()).isTrue();
     }
 
+    @Test
+    public void findByCursor() {
+        //given
+        memberRepository.save(new Member("cursor3", 10));
+        memberRepository.save(new Member("cursor1", 10));
+        memberRepository.save(new Member("cursor4", 10));
+        memberRepository.save(new Member("cursor2", 10));
+        em.flush();
+        em.clear();
+
+        //when (다른 테스트 데이터와 섞이지 않도록 "cursor" 바로 뒤부터 읽음)
+        CursorPage<Member> page1 = memberRepository.findByCursor(MemberCursor.next("cursor", 0L), 2);
+        CursorPage<Member> page2 = memberRepository.findByCursor(MemberCursor.decode(page1.getNextCursor()), 2);
+        CursorPage<Member> back = memberRepository.findByCursor(MemberCursor.decode(page2.getPrevCursor()), 2);
+
+        //then
+        assertThat(page1.getContent()).extracting("username").containsExactly("cursor1", "cursor2");
+        assertThat(page2.getContent()).extracting("username").containsExactly("cursor3", "cursor4");
+        assertThat(back.getContent()).extracting("username").containsExactly("cursor1", "cursor2");
+        assertThat(back.hasNext()).isTrue();
+    }
+
+    @Test
+    public void findByCursorWithNullUsername() {
+        //given
+        Member nullA = memberRepository.save(new Member(null, 10));
+        Member nullB = memberRepository.save(new Member(null, 10));
+        memberRepository.save(new Member("cursorNull", 10));
+        em.flush();
+        em.clear();
+
+        //when null username 구간에서 다음 페이지, 그 뒤 username 구간, 다시 이전 페이지
+        CursorPage<Member> nulls = memberRepository.findByCursor(MemberCursor.next(null, nullA.getId()), 1);
+        CursorPage<Member> named = memberRepository.findByCursor(MemberCursor.decode(nulls.getNextCursor()), 1);
+        CursorPage<Member> back = memberRepository.findByCursor(MemberCursor.decode(named.getPrevCursor()), 1);
+
+        //then
+        assertThat(nulls.getContent()).extracting("id").containsExactly(nullB.getId());
+        assertThat(named.getContent()).extracting("username").doesNotContainNull();
+        assertThat(back.getContent()).extracting("id").containsExactly(nullB.getId());
+        //"null"이라는 username과 구분된다.
+        assertThat(MemberCursor.decode(MemberCursor.next(null, 1L).encode()).getUsername()).isNull();
+        assertThat(MemberCursor.decode(MemberCursor.next("null", 1L).encode()).getUsername()).isEqualTo("null");
+    }
+
+    @Test
+    public void findByAgeWithCountStrategy() {
+        //given
+        for (int i = 0; i < 5; i++) {
+            memberRepository.save(new Member("count" + i, 10));
+        }
+        em.flush();
+        em.clear();
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "username"));
+
+        //when
+        Slice<Member> slice = memberRepository.findSliceByAge(10, pageRequest);
+        Page<Member> exact = memberRepository.findByAge(10, pageRequest, CountStrategy.EXACT);
+        Page<Member> cached = memberRepository.findByAge(10, pageRequest, CountStrategy.CACHED);
+        Page<Member> estimated = memberRepository.findByAge(10, pageRequest, CountStrategy.ESTIMATED);
+
+        //then
+        assertThat(slice.getContent().size()).isEqualTo(3);
+        assertThat(slice.hasNext()).isTrue();
+        assertThat(cached.getTotalElements()).isEqualTo(exact.getTotalElements());
+        //H2는 커밋 전 row까지 포함한 테이블 크기를 추정치로 준다.
+        assertThat(estimated.getTotalElements()).isPositive()
+                .isCloseTo(exact.getTotalElements(), withinPercentage(10));
+        assertThat(memberRepository.findAll(pageRequest, CountStrategy.CACHED).getTotalElements())
+                .isEqualTo(exact.getTotalElements());
+        assertThat(memberRepository.findByNatvieProjection(PageRequest.of(0, 3), CountStrategy.CACHED).getTotalElements())
+                .isEqualTo(exact.getTotalElements());
+
+        //member가 추가되면 캐시된 count는 무효화된다.
+        memberRepository.save(new Member("count5", 10));
+        em.flush();
+        assertThat(memberRepository.countMembers(CountStrategy.CACHED)).isEqualTo(exact.getTotalElements() + 1);
+    }
+
     @Test
     public void bulkUpdate() {
         //given
@@ -236,6 +334,175 @@ class MemberRepositoryTest {
         assertThat(resultCount).isEqualTo(3);
     }
 
+    @Test
+    public void bulkUpdateEvictsOnlyAffectedMembers() {
+        //given
+        Team team = teamRepository.save(new Team("evictTeam"));
+        Member young = memberRepository.save(new Member("evictYoung", 4999, team));
+        Member old = memberRepository.save(new Member("evictOld", 5000, team));
+        young.setUsername("evictYoung2"); //flush 전 변경도 유실되면 안 된다.
+
+        //when
+        int resultCount = memberRepository.bulkAgePlus(5000);
+
+        //then
+        assertThat(resultCount).isEqualTo(1);
+        assertThat(em.contains(old)).isFalse();
+        assertThat(em.contains(young)).isTrue();
+        assertThat(em.contains(team)).isTrue();
+        assertThat(memberRepository.findById(old.getId()).get().getAge()).isEqualTo(5001);
+        assertThat(memberRepository.findByUsername("evictYoung2")).containsExactly(young);
+
+        memberRepository.deleteAllInBatch(List.of(young, memberRepository.findById(old.getId()).get()));
+        teamRepository.delete(team);
+    }
+
+    @Test
+    public void bulkUpdateRefreshesLoadedTeamMembers() {
+        //given team.members 컬렉션까지 로딩된 상태
+        Team team = teamRepository.save(new Team("membersTeam"));
+        Member young = memberRepository.save(new Member("membersYoung", 4999, team));
+        Member old = memberRepository.save(new Member("membersOld", 5000, team));
+        em.flush();
+        em.clear();
+        Team loaded = teamRepository.findById(team.getId()).get();
+        assertThat(loaded.getMembers()).extracting(Member::getAge).containsExactlyInAnyOrder(4999, 5000);
+
+        //when
+        memberRepository.bulkAgePlus(5000);
+
+        //then 같은 team 인스턴스의 컬렉션도 update된 값
+        assertThat(em.contains(loaded)).isTrue();
+        assertThat(loaded.getMembers()).extracting(Member::getAge).containsExactlyInAnyOrder(4999, 5001);
+
+        memberRepository.deleteAllInBatch(loaded.getMembers());
+        teamRepository.delete(loaded);
+    }
+
+    //query cache는 커밋된 데이터만 대상이므로 트랜잭션 없이 실행
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void queryCacheInvalidatedByBulkUpdate() {
+        //given
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        Member saved = memberRepository.save(new Member("queryCache", 1000));
+
+        //when
+        memberRepository.findByUsername("queryCache"); //miss -> put
+        long hitBefore = statistics.getQueryCacheHitCount();
+        List<Member> cached = memberRepository.findByUsername("queryCache");
+
+        //then
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(hitBefore + 1);
+        assertThat(cached.get(0).getAge()).isEqualTo(1000);
+
+        //bulk update 후 캐시된 결과(age 1000)가 나오면 안 된다.
+        transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(1000));
+        assertThat(memberRepository.findByUsername("queryCache").get(0).getAge()).isEqualTo(1001);
+
+        transactionTemplate.executeWithoutResult(status -> memberJpaRepository.bulkAgePlus(1000));
+        assertThat(memberRepository.findByUsername("queryCache").get(0).getAge()).isEqualTo(1002);
+
+        memberRepository.deleteById(saved.getId());
+        assertThat(memberRepository.findByUsername("queryCache")).isEmpty();
+    }
+
+    @Test
+    public void sqlStatementCount() {
+        //given
+        for (int i = 0; i < 3; i++) {
+            Team team = teamRepository.save(new Team("sqlCountTeam" + i));
+            memberRepository.save(new Member("sqlCount", 10 + i, team));
+        }
+        em.flush();
+        em.clear();
+
+        //when 지연로딩: member 1번 + team은 @BatchSize로 in 쿼리 1번
+        try (SqlCountScope lazy = sqlStatementCounter.open("lazy")) {
+            memberRepository.findListByUsername("sqlCount").forEach(m -> m.getTeam().getName());
+            assertThat(lazy.getStatementCount()).isEqualTo(2);
+        }
+        em.clear();
+
+        //entity graph: join 1번
+        try (SqlCountScope graph = sqlStatementCounter.open("entityGraph")) {
+            memberRepository.findEntityGraphByUsername("sqlCount").forEach(m -> m.getTeam().getName());
+            assertThat(graph.getStatementCount()).isEqualTo(1);
+        }
+
+        //같은 쿼리를 파라미터만 바꿔 반복 -> N+1
+        SqlCountScope loop = sqlStatementCounter.open("loop");
+        for (int i = 0; i < 3; i++) {
+            memberRepository.findUser("sqlCount", 10 + i);
+        }
+        assertThat(loop.getStatementCount()).isEqualTo(3);
+        assertThat(loop.getNPlusOneSuspects()).hasSize(1);
+        assertThatThrownBy(loop::close).hasMessageContaining("N+1"); //테스트는 FAIL 모드
+    }
+
+    @Test
+    public void prefetchTeams() {
+        //given
+        for (int i = 0; i < 5; i++) {
+            Team team = teamRepository.save(new Team("prefetchTeam" + i));
+            memberRepository.save(new Member("prefetch", i, team));
+            memberRepository.save(new Member("prefetch", i, team));
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        List<Member> members = memberRepository.findListByUsername("prefetch");
+        List<MemberDto> dtos;
+        try (SqlCountScope scope = sqlStatementCounter.open("prefetch")) {
+            memberRepository.prefetchTeams(members);
+            dtos = members.stream().map(MemberDto::new).collect(Collectors.toList());
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+
+        //then
+        assertThat(dtos).extracting(MemberDto::getTeamName).allMatch(name -> name.startsWith("prefetchTeam"));
+    }
+
+    //2차 캐시도 커밋된 데이터만 대상이므로 트랜잭션 없이 실행
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void prefetchTeamsFromSecondLevelCache() {
+        //given 캐시에 있는 team 2개, 없는 team 1개
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Team team = teamRepository.save(new Team("prefetchCachedTeam" + i));
+            memberRepository.save(new Member("prefetchCached", i, team));
+            teams.add(team);
+        }
+        em.getEntityManagerFactory().getCache().evict(Team.class, teams.get(2).getId());
+
+        EntityStatistics teamStatistics = em.getEntityManagerFactory().unwrap(SessionFactory.class)
+                .getStatistics().getEntityStatistics(Team.class.getName());
+        long loadsBefore = teamStatistics.getLoadCount();
+
+        //when
+        List<MemberDto> dtos = transactionTemplate.execute(status -> {
+            List<Member> members = memberRepository.findListByUsername("prefetchCached");
+            try (SqlCountScope scope = sqlStatementCounter.open("prefetchCached")) {
+                memberRepository.prefetchTeams(members);
+                List<MemberDto> result = members.stream().map(MemberDto::new).collect(Collectors.toList());
+
+                //then 캐시에 없는 team 1개만 DB에서 읽는다.
+                assertThat(scope.getStatementCount()).isEqualTo(1);
+                return result;
+            }
+        });
+        assertThat(teamStatistics.getLoadCount() - loadsBefore).isEqualTo(1);
+        assertThat(dtos).extracting(MemberDto::getTeamName)
+                .containsExactlyInAnyOrder("prefetchCachedTeam0", "prefetchCachedTeam1", "prefetchCachedTeam2");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username = 'prefetchCached'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'prefetchCachedTeam%'").executeUpdate();
+        });
+    }
+
     @Test
     public void findMemberLazy() {
         //given
@@ -340,6 +607,32 @@ class MemberRepositoryTest {
 
     }
 
+    @Test
+    public void specShapeReusesQueryPlan() {
+        //given
+        Team team = new Team("shapeTeam");
+        em.persist(team);
+        em.persist(new Member("shape1", 0, team));
+        em.persist(new Member("shape2", 0, team));
+        em.persist(new Member("shape3", 0));
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        //when 구조가 같으면 값만 바꿔도 같은 plan
+        memberRepository.findAll(MemberSpec.username("shape1").and(MemberSpec.teamName("shapeTeam")));
+        long hitBefore = statistics.getQueryPlanCacheHitCount();
+        List<Member> second = memberRepository.findAll(MemberSpec.username("shape2").and(MemberSpec.teamName("shapeTeam")));
+
+        //then
+        assertThat(statistics.getQueryPlanCacheHitCount()).isGreaterThan(hitBefore);
+        assertThat(second).extracting(Member::getUsername).containsExactly("shape2");
+
+        //teamName이 비면 조건과 join이 모두 빠진다. (team 없는 member도 조회)
+        assertThat(memberRepository.findAll(MemberSpec.username("shape3").and(MemberSpec.teamName(""))))
+                .extracting(Member::getUsername).containsExactly("shape3");
+        assertThat(memberRepository.findAll(MemberSpec.teamName(null).and(MemberSpec.username("shape3"))))
+                .extracting(Member::getUsername).containsExactly("shape3");
+    }
+
     @Test
     public void queryByExample() {
         //given
@@ -439,6 +732,90 @@ class MemberRepositoryTest {
 
     }
 
+    @Test
+    public void compiledProjection() {
+        //given
+        Team team = new Team("compiledTeam");
+        em.persist(team);
+        em.persist(new Member("compiled", 33, team));
+        em.flush();
+        em.clear();
+
+        //when
+        List<UsernameOnly> open = memberRepository.findCompiledProjectionByUsername("compiled", UsernameOnly.class);
+        List<NestedClosedProjections> nested = memberRepository.findCompiledProjectionByUsername("compiled", NestedClosedProjections.class);
+
+        //then Spring Data projection과 같은 값
+        assertThat(open).extracting(UsernameOnly::getUsername)
+                .containsExactlyElementsOf(memberRepository.findProjectionByUsername("compiled", UsernameOnly.class)
+                        .stream().map(UsernameOnly::getUsername).collect(Collectors.toList()))
+                .containsExactly("compiled 33");
+        assertThat(nested).extracting(p -> p.getTeam().getName()).containsExactly("compiledTeam");
+
+        //프로퍼티 접근만 있는 SpEL은 바이트코드로 컴파일된다. (문자열 + 숫자 연결은 SpEL 컴파일러가 지원하지 않아 해석 모드)
+        List<UsernameAndAge> compiled = memberRepository.findCompiledProjectionByUsername("compiled", UsernameAndAge.class);
+        assertThat(compiled.get(0).getName()).isEqualTo("compiled");
+        assertThat(compiled.get(0).getAge()).isEqualTo(33);
+        assertThat(compiled.get(0).getLabel()).isEqualTo("compiled (33)"); //default 메서드는 인터페이스 구현 호출
+        assertThat(CompiledProjection.of(UsernameAndAge.class).isAllCompiled()).isTrue();
+
+        //getter는 호출할 때 계산하므로 읽지 않은 연관 엔티티(team)는 초기화하지 않는다.
+        em.clear();
+        List<UsernameAndTeam> lazy = memberRepository.findCompiledProjectionByUsername("compiled", UsernameAndTeam.class);
+        assertThat(lazy.get(0).getName()).isEqualTo("compiled");
+        assertThat(Hibernate.isInitialized(em.getReference(Team.class, team.getId()))).isFalse();
+        assertThat(lazy.get(0).getTeam().getName()).isEqualTo("compiledTeam");
+        assertThat(Hibernate.isInitialized(em.getReference(Team.class, team.getId()))).isTrue();
+    }
+
+    @Test
+    public void nestedClosedProjectionTuple() {
+        //given
+        Team team = new Team("tupleTeam");
+        Team unnamed = new Team(null);
+        em.persist(team);
+        em.persist(unnamed);
+        em.persist(new Member("tuple", 1, team));
+        em.persist(new Member("tuple", 2));
+        em.persist(new Member("tuple", 3, unnamed));
+        em.flush();
+        em.clear();
+
+        //when
+        List<NestedClosedProjections> result;
+        try (SqlCountScope scope = sqlStatementCounter.open("tuple")) {
+            result = memberRepository.findCompiledProjectionByUsername("tuple", NestedClosedProjections.class);
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+
+        //then 엔티티는 영속성 컨텍스트에 올라오지 않는다.
+        assertThat(em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities()).isZero();
+        assertThat(result).extracting(NestedClosedProjections::getUsername).containsOnly("tuple");
+        assertThat(result).extracting(p -> p.getTeam() == null ? null : p.getTeam().getName())
+                .containsExactlyInAnyOrder("tupleTeam", null, null);
+        //team은 있지만 name이 null이면 Spring Data처럼 name이 null인 TeamInfo
+        assertThat(result).filteredOn(p -> p.getTeam() != null).hasSize(2);
+    }
+
+    interface UsernameAndTeam {
+        @Value("#{target.username}")
+        String getName();
+
+        NestedClosedProjections.TeamInfo getTeam();
+    }
+
+    interface UsernameAndAge {
+        @Value("#{target.username}")
+        String getName();
+
+        @Value("#{target.age}")
+        int getAge();
+
+        default String getLabel() {
+            return getName() + " (" + getAge() + ")";
+        }
+    }
+
     @Test
     public void natvieQuery() {
         //given
@@ -457,6 +834,38 @@ class MemberRepositoryTest {
         assertThat(findMember.getUsername()).isEqualTo("m1");
     }
 
+    @Test
+    public void findByNativeRows() {
+        //given
+        Team teamA = new Team("rowTeam");
+        em.persist(teamA);
+        em.persist(new Member("row1", 0, teamA));
+        em.persist(new Member("row2", 0));
+
+        //when
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "id"));
+        Page<MemberRow> rows = memberRepository.findByNativeRows(pageRequest, CountStrategy.EXACT);
+        Slice<MemberProjection> proxies = memberRepository.findSliceByNatvieProjection(pageRequest);
+
+        //then 프록시 projection과 같은 결과
+        assertThat(rows.getContent()).extracting(MemberProjection::getId, MemberProjection::getUsername, MemberProjection::getTeamName)
+                .containsExactlyElementsOf(proxies.getContent().stream()
+                        .map(p -> tuple(p.getId(), p.getUsername(), p.getTeamName()))
+                        .collect(Collectors.toList()));
+        assertThat(rows.getContent().get(0).getUsername()).isEqualTo("row2");
+        assertThat(rows.getContent().get(0).getTeamName()).isNull();
+        assertThat(rows.getContent().get(1).getTeamName()).isEqualTo("rowTeam");
+        assertThat(rows.hasNext()).isEqualTo(proxies.hasNext());
+    }
+
+    //예외가 나면 테스트 트랜잭션이 rollback-only가 되므로 트랜잭션 없이 실행
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void findByNativeRowsRejectsUnknownSort() {
+        assertThatThrownBy(() -> memberRepository.findSliceByNativeRows(PageRequest.of(0, 3, Sort.by("age"))))
+                .hasMessageContaining("age");
+    }
+
     @Test
     public void findByNativeQuery() {
         //given
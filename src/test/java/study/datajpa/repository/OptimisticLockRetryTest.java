@@ -0,0 +1,153 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.LockContentionStats;
+import study.datajpa.entity.Member;
+import study.datajpa.monitoring.LockMetrics;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class OptimisticLockRetryTest {
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired OptimisticLockRetry optimisticLockRetry;
+    @Autowired LockMetrics lockMetrics;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired EntityManager em;
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'optimistic%'").executeUpdate());
+    }
+
+    @Test
+    public void retryAfterConflict() {
+        //given
+        Member saved = memberRepository.save(new Member("optimistic1", 0));
+        AtomicInteger attempts = new AtomicInteger();
+
+        //when
+        optimisticLockRetry.execute("test.conflict", () -> {
+            Member member = em.find(Member.class, saved.getId());
+            if (attempts.incrementAndGet() == 1) {
+                //읽은 뒤 다른 트랜잭션이 먼저 커밋 -> 이번 커밋은 version 불일치
+                CompletableFuture.runAsync(() -> memberRepository.addAgeWithOptimisticLock("optimistic1", 100)).join();
+            }
+            member.setAge(member.getAge() + 1);
+            return member;
+        });
+
+        //then
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(memberRepository.findById(saved.getId()).get().getAge()).isEqualTo(101);
+        LockContentionStats stats = stats("test.conflict");
+        assertThat(stats.getConflicts()).isEqualTo(1);
+        assertThat(stats.getRetries()).isEqualTo(1);
+        assertThat(stats.getExhausted()).isEqualTo(0);
+    }
+
+    @Test
+    public void giveUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> optimisticLockRetry.execute("test.exhausted", () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Member.class, 1L);
+        })).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+
+        assertThat(attempts.get()).isEqualTo(5); //max-attempts
+        assertThat(stats("test.exhausted").getRetries()).isEqualTo(4);
+        assertThat(stats("test.exhausted").getExhausted()).isEqualTo(1);
+    }
+
+    @Test
+    public void rejectInsideTransaction() {
+        assertThatThrownBy(() -> transactionTemplate.execute(status ->
+                optimisticLockRetry.execute("test.nested", () -> 1)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void concurrentUpdatesAreNotLost() throws Exception {
+        //given
+        Member saved = memberRepository.save(new Member("optimistic2", 0));
+        long exhaustedBefore = exhausted("member.addAge:optimistic");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        //when 4개 스레드가 5번씩 +1 (스케줄링에 따라 max-attempts를 다 써서 실패하는 호출이 있을 수 있다.)
+        try {
+            List<CompletableFuture<Void>> futures = IntStream.range(0, 4)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                        for (int j = 0; j < 5; j++) {
+                            try {
+                                memberRepository.addAgeWithOptimisticLock("optimistic2", 1);
+                                succeeded.incrementAndGet();
+                            } catch (ObjectOptimisticLockingFailureException e) {
+                                failed.incrementAndGet();
+                            }
+                        }
+                    }, executor))
+                    .collect(Collectors.toList());
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        //then 성공한 호출은 모두 반영되고(lost update 없음), 실패한 호출은 재시도를 다 쓴 경우뿐
+        Member member = memberRepository.findById(saved.getId()).get();
+        assertThat(succeeded.get() + failed.get()).isEqualTo(20);
+        assertThat(succeeded.get()).isPositive();
+        assertThat(member.getAge()).isEqualTo(succeeded.get());
+        assertThat(member.getVersion()).isEqualTo((long) succeeded.get());
+        assertThat(exhausted("member.addAge:optimistic") - exhaustedBefore).isEqualTo(failed.get());
+    }
+
+    @Test
+    public void pessimisticLockWaitIsRecorded() {
+        memberRepository.save(new Member("optimistic3", 0));
+        long before = lockWaits("member.addAge:pessimistic");
+
+        assertThat(memberRepository.addAgeWithPessimisticLock("optimistic3", 1)).isEqualTo(1);
+
+        assertThat(lockWaits("member.addAge:pessimistic")).isEqualTo(before + 1);
+    }
+
+    private long lockWaits(String operation) {
+        return lockMetrics.read().stream()
+                .filter(s -> s.getOperation().equals(operation))
+                .mapToLong(LockContentionStats::getLockWaits)
+                .findFirst().orElse(0);
+    }
+
+    private long exhausted(String operation) {
+        return lockMetrics.read().stream()
+                .filter(s -> s.getOperation().equals(operation))
+                .mapToLong(LockContentionStats::getExhausted)
+                .findFirst().orElse(0);
+    }
+
+    private LockContentionStats stats(String operation) {
+        return lockMetrics.read().stream()
+                .filter(s -> s.getOperation().equals(operation))
+                .findFirst().orElseThrow();
+    }
+}
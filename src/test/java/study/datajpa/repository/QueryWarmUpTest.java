@@ -0,0 +1,61 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.datajpa.dto.QueryWarmUpResult;
+import study.datajpa.entity.Member;
+import study.datajpa.monitoring.RepositoryMetrics;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//ddl-auto가 공용 DB(application.yml의 tcp://localhost/~/datajpa)를 다시 만들지 않도록 별도 인메모리 DB
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:warm-up;DB_CLOSE_DELAY=-1",
+        "datajpa.warm-up.enabled=true"
+})
+class QueryWarmUpTest {
+
+    @Autowired QueryWarmUp queryWarmUp;
+    @Autowired RepositoryMetrics repositoryMetrics;
+
+    @Test
+    public void warmUpAllQueryMethods() {
+        //기동이 끝났으면 fail-on-error에 걸린 쿼리는 없다.
+        List<QueryWarmUpResult> results = queryWarmUp.getResults();
+
+        QueryWarmUpResult jpql = find(results, "MemberRepository.findUser");
+        assertThat(jpql.getKind()).isEqualTo("JPQL");
+        assertThat(jpql.getCompileMicros()).isPositive();
+        assertThat(jpql.getFirstExecutionMicros()).isPositive();
+
+        assertThat(find(results, "MemberRepository.findByUsernameAndAgeGreaterThan").getKind()).isEqualTo("DERIVED");
+        assertThat(find(results, "MemberRepository.findByNativeQuery").getKind()).isEqualTo("NATIVE");
+        assertThat(find(results, "MemberRepository.findByNatvieProjection").getError()).isNull();
+        assertThat(find(results, "MemberRepository.findLockByUsername").getError()).startsWith("skipped");
+        assertThat(find(results, "MemberRepository.findByNames").getError()).isNull();
+        QueryWarmUpResult named = find(results, "named:Member.findByName");
+        assertThat(named.getKind()).isEqualTo("NAMED");
+        assertThat(named.getError()).isNull();
+        assertThat(named.getCompileMicros()).isPositive();
+
+        //warm-up 실행은 리포지토리 지연시간 통계에 남지 않는다.
+        assertThat(repositoryMetrics.read()).noneMatch(s -> s.getMethod().startsWith("findUser("));
+    }
+
+    @Test
+    public void collectionParameterIsNotEmpty() throws NoSuchMethodException {
+        //빈 목록은 in ()이 되어 H2 외의 DB에서 문법 오류
+        Object[] args = QueryWarmUp.arguments(MemberRepository.class.getMethod("findByNames", List.class), Member.class);
+
+        assertThat(args).containsExactly(List.of(""));
+    }
+
+    private QueryWarmUpResult find(List<QueryWarmUpResult> results, String query) {
+        return results.stream()
+                .filter(r -> r.getQuery().equals(query))
+                .findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,47 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.datajpa.dto.CacheRegionStats;
+import study.datajpa.entity.Team;
+import study.datajpa.monitoring.CacheStatisticsReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class TeamJpaRepositoryTest {
+
+    @Autowired TeamJpaRepository teamJpaRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired CacheStatisticsReader cacheStatisticsReader;
+
+    @Test
+    public void secondLevelCache() {
+        //given (트랜잭션 커밋 시 team region에 들어감)
+        Team team = teamRepository.save(new Team("cachedTeam"));
+        long hitBefore = teamRegion().getHitCount();
+
+        //when (각각 다른 영속성 컨텍스트)
+        Team find1 = teamJpaRepository.find(team.getId());
+        Team find2 = teamRepository.findById(team.getId()).get();
+
+        //then
+        assertThat(find1.getName()).isEqualTo("cachedTeam");
+        assertThat(find2.getName()).isEqualTo("cachedTeam");
+        assertThat(teamRegion().getHitCount()).isEqualTo(hitBefore + 2);
+        assertThat(teamRegion().getEvictionCount()).isGreaterThanOrEqualTo(0);
+
+        for (CacheRegionStats stats : cacheStatisticsReader.read()) {
+            System.out.println(stats.getRegion() + " hit=" + stats.getHitCount() + " miss=" + stats.getMissCount()
+                    + " put=" + stats.getPutCount() + " eviction=" + stats.getEvictionCount());
+        }
+    }
+
+    private CacheRegionStats teamRegion() {
+        return cacheStatisticsReader.read().stream()
+                .filter(stats -> stats.getRegion().equals("team"))
+                .findFirst()
+                .orElseThrow();
+    }
+}
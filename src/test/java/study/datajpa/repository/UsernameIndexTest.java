@@ -0,0 +1,127 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.UsernameIndexStats;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class UsernameIndexTest {
+
+    final MemberRepository memberRepository = mock(MemberRepository.class);
+    final Map<Long, String> table = new LinkedHashMap<>();
+    Runnable duringLoad = () -> {};
+    UsernameIndex index;
+
+    @AfterEach
+    public void shutdown() {
+        index.destroy();
+    }
+
+    UsernameIndex createIndex(int maxPending) {
+        table.put(1L, "alice");
+        table.put(2L, "Malik");
+        table.put(3L, "bob");
+        table.put(4L, "alina");
+        table.put(5L, "al");
+        doAnswer(invocation -> {
+            BiConsumer<Long, String> action = invocation.getArgument(1);
+            table.forEach(action);
+            duringLoad.run();
+            return (long) table.size();
+        }).when(memberRepository).forEachUsername(anyInt(), any());
+
+        index = new UsernameIndex(memberRepository, mock(PlatformTransactionManager.class), 1000, maxPending);
+        index.rebuild();
+        return index;
+    }
+
+    @Test
+    public void searchContainingAndPrefix() {
+        //given
+        UsernameIndex index = createIndex(1024);
+
+        //when then
+        assertThat(usernames(index.search("ali", 10))).containsExactly("alice", "alina", "Malik");
+        assertThat(usernames(index.search(" ALI ", 10))).containsExactly("alice", "alina", "Malik");
+        assertThat(usernames(index.search("ali", 2))).containsExactly("alice", "alina");
+        assertThat(usernames(index.search("al", 10))).containsExactly("al", "alice", "alina"); //2글자는 prefix
+        assertThat(usernames(index.search("lic", 10))).containsExactly("alice");
+        assertThat(index.search("aliz", 10)).isEmpty();
+        assertThat(index.search("ali", 10).get(0).getId()).isEqualTo(1L);
+
+        UsernameIndexStats stats = index.stats();
+        assertThat(stats.getIndexedCount()).isEqualTo(5);
+        assertThat(stats.getEstimatedBytes()).isGreaterThan(0);
+    }
+
+    @Test
+    public void overlayPendingChanges() {
+        //given
+        UsernameIndex index = createIndex(1024);
+
+        //when
+        index.apply(2L, "bobby"); //Malik -> bobby
+        index.apply(1L, null); //alice 삭제
+        index.apply(6L, "alibaba"); //추가
+
+        //then
+        assertThat(usernames(index.search("ali", 10))).containsExactly("alibaba", "alina");
+        assertThat(usernames(index.search("bob", 10))).containsExactly("bob", "bobby");
+        assertThat(index.stats().getPendingCount()).isEqualTo(3);
+        assertThat(index.stats().getCompactionCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void compactPendingIntoSnapshot() {
+        //given
+        UsernameIndex index = createIndex(2);
+
+        //when
+        index.apply(2L, "bobby");
+        index.apply(1L, null);
+        index.apply(6L, "alibaba"); //3 > max-pending(2) -> username-index 스레드에서 합친다.
+        index.awaitBuilds();
+
+        //then
+        UsernameIndexStats stats = index.stats();
+        assertThat(stats.getCompactionCount()).isEqualTo(1);
+        assertThat(stats.getPendingCount()).isEqualTo(0);
+        assertThat(stats.getIndexedCount()).isEqualTo(5);
+        assertThat(usernames(index.search("ali", 10))).containsExactly("alibaba", "alina");
+        assertThat(usernames(index.search("bob", 10))).containsExactly("bob", "bobby");
+    }
+
+    @Test
+    public void rebuildKeepsChangesCommittedDuringLoad() {
+        //given
+        UsernameIndex index = createIndex(1024);
+        index.apply(3L, "bobcat"); //rebuild 전에 커밋된 변경 -> DB 값에 들어 있음
+        table.put(3L, "bobcat");
+
+        //when 읽는 도중 커밋된 변경
+        duringLoad = () -> index.apply(7L, "alien");
+        index.rebuild();
+
+        //then
+        assertThat(index.stats().getPendingCount()).isEqualTo(1);
+        assertThat(usernames(index.search("ali", 10))).containsExactly("alice", "alien", "alina", "Malik");
+        assertThat(usernames(index.search("bob", 10))).containsExactly("bobcat");
+    }
+
+    private static List<String> usernames(List<MemberDto> members) {
+        return members.stream().map(MemberDto::getUsername).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,44 @@
+package study.datajpa.startup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.LivenessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EntityManagerFactoryReadinessTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void brokenWhenBootstrapFails() {
+        //given 백그라운드 생성이 실패한다. (executor는 바로 실행)
+        AbstractEntityManagerFactoryBean factoryBean = mock(AbstractEntityManagerFactoryBean.class);
+        when(factoryBean.getBootstrapExecutor()).thenReturn(new TaskExecutorAdapter(Runnable::run));
+        when(factoryBean.getNativeEntityManagerFactory()).thenThrow(new IllegalStateException("bootstrap failed"));
+        ObjectProvider<AbstractEntityManagerFactoryBean> factoryBeans = mock(ObjectProvider.class);
+        when(factoryBeans.getIfUnique()).thenReturn(factoryBean);
+        ConfigurableApplicationContext context = mock(ConfigurableApplicationContext.class);
+        EntityManagerFactoryReadiness readiness = new EntityManagerFactoryReadiness(factoryBeans);
+
+        //when
+        readiness.onReady(new ApplicationReadyEvent(new SpringApplication(), new String[0], context, Duration.ZERO));
+
+        //then 요청은 계속 거절하고, 재시작되도록 liveness를 BROKEN으로 바꾼다.
+        assertThat(readiness.isReady()).isFalse();
+        verify(context).publishEvent(argThat((ApplicationEvent event) -> event instanceof AvailabilityChangeEvent
+                && ((AvailabilityChangeEvent<?>) event).getState() == LivenessState.BROKEN));
+    }
+}
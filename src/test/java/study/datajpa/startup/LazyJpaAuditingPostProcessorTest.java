@@ -0,0 +1,27 @@
+package study.datajpa.startup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LazyJpaAuditingPostProcessorTest {
+
+    @Test
+    public void deferAuditingBeans() {
+        //given
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("jpaAuditingHandler", new RootBeanDefinition(Object.class));
+        beanFactory.registerBeanDefinition("jpaMappingContext", new RootBeanDefinition(Object.class));
+        beanFactory.registerBeanDefinition("memberRepository", new RootBeanDefinition(Object.class));
+
+        //when
+        new LazyJpaAuditingPostProcessor().postProcessBeanFactory(beanFactory);
+
+        //then
+        assertThat(beanFactory.getBeanDefinition("jpaAuditingHandler").isLazyInit()).isTrue();
+        assertThat(beanFactory.getBeanDefinition("jpaMappingContext").isLazyInit()).isTrue();
+        assertThat(beanFactory.getBeanDefinition("memberRepository").isLazyInit()).isFalse();
+    }
+}
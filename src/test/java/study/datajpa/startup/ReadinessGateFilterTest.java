@@ -0,0 +1,67 @@
+package study.datajpa.startup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.availability.ApplicationAvailabilityBean;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadinessGateFilterTest {
+
+    final ApplicationAvailabilityBean availability = new ApplicationAvailabilityBean();
+    final EntityManagerFactoryReadiness entityManagerFactoryReadiness = mock(EntityManagerFactoryReadiness.class);
+    final ReadinessGateFilter filter = new ReadinessGateFilter(availability, entityManagerFactoryReadiness);
+
+    @Test
+    public void refuseUntilReady() throws Exception {
+        //given
+        when(entityManagerFactoryReadiness.isReady()).thenReturn(true);
+        ready(ReadinessState.REFUSING_TRAFFIC);
+
+        //when
+        MockHttpServletResponse refused = request("/members");
+        MockHttpServletResponse internal = request("/internal/caches");
+        ready(ReadinessState.ACCEPTING_TRAFFIC);
+        MockHttpServletResponse accepted = request("/members");
+
+        //then
+        assertThat(refused.getStatus()).isEqualTo(503);
+        assertThat(refused.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(internal.getStatus()).isEqualTo(200);
+        assertThat(accepted.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void refuseWhileEntityManagerFactoryBootstrapping() throws Exception {
+        //given 스프링 부트는 ACCEPTING_TRAFFIC을 발행했지만 EntityManagerFactory는 아직 만드는 중
+        when(entityManagerFactoryReadiness.isReady()).thenReturn(false);
+        ready(ReadinessState.ACCEPTING_TRAFFIC);
+
+        //when
+        MockHttpServletResponse refused = request("/members");
+        when(entityManagerFactoryReadiness.isReady()).thenReturn(true);
+        MockHttpServletResponse accepted = request("/members");
+
+        //then
+        assertThat(refused.getStatus()).isEqualTo(503);
+        assertThat(accepted.getStatus()).isEqualTo(200);
+    }
+
+    private void ready(ReadinessState state) {
+        availability.onApplicationEvent(new AvailabilityChangeEvent<>(new StaticApplicationContext(), state));
+    }
+
+    private MockHttpServletResponse request(String uri) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}